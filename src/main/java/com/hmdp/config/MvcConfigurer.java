@@ -1,7 +1,14 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.ClientIpResolver;
 import com.hmdp.utils.LoginInterceptor;
+import com.hmdp.utils.LoginSessionCache;
+import com.hmdp.utils.RateLimitInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import com.hmdp.utils.RequestMetricsInterceptor;
+import com.hmdp.utils.SignedTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -13,23 +20,43 @@ import javax.annotation.Resource;
 public class MvcConfigurer implements WebMvcConfigurer {
     @Resource
     StringRedisTemplate stringRedisTemplate;
+    @Resource
+    LoginSessionCache loginSessionCache;
+    @Resource
+    SignedTokenService signedTokenService;
+    @Resource
+    MeterRegistry meterRegistry;
+    @Resource
+    ClientIpResolver clientIpResolver;
+    @Value("${hmdp.metrics.slow-threshold:500}")
+    long slowThreshold;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 请求指标拦截器, 最先执行, 统计包括其他拦截器在内的耗时与往返次数
+        registry.addInterceptor(new RequestMetricsInterceptor(meterRegistry, slowThreshold)).addPathPatterns("/**")
+                .order(-1);
         // 登录拦截器
         registry.addInterceptor(new LoginInterceptor())
                 .excludePathPatterns(
                         "/blog/hot",
+                        "/blog/hot/scroll",
+                        "/blog-comments/of/blog",
+                        "/blog-comments/replies/**",
                         "/shop/**",
                         "/shop-type/**",
                         "/voucher/**",
-                        "/upload/**",
+                        "/upload/blog/variants",
+                        "/imgs/**",
                         "/user/code",
                         "/user/login"
                 )
                 .order(1);
         // Token刷新拦截器
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).addPathPatterns("/**")
+        registry.addInterceptor(new RefreshTokenInterceptor(loginSessionCache, signedTokenService)).addPathPatterns("/**")
                 .order(0);
+        // 限流拦截器, 在登录校验之后执行, 以便按用户限流
+        registry.addInterceptor(new RateLimitInterceptor(stringRedisTemplate, clientIpResolver)).addPathPatterns("/**")
+                .order(2);
     }
 }
@@ -1,19 +1,17 @@
 package com.hmdp.controller;
 
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
-import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
-import com.hmdp.entity.User;
 import com.hmdp.service.IBlogService;
-import com.hmdp.service.IUserService;
-import com.hmdp.utils.SystemConstants;
-import com.hmdp.utils.UserHolder;
+import com.hmdp.utils.RateLimit;
+import com.hmdp.utils.UvCounter;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import java.time.LocalDate;
 
 /**
  * <p>
@@ -29,55 +27,82 @@ public class BlogController {
 
     @Resource
     private IBlogService blogService;
+
     @Resource
-    private IUserService userService;
+    private UvCounter uvCounter;
 
     @PostMapping
     public Result saveBlog(@RequestBody Blog blog) {
-        // 获取登录用户
-        UserDTO user = UserHolder.getUser();
-        blog.setUserId(user.getId());
-        // 保存探店博文
-        blogService.save(blog);
-        // 返回id
-        return Result.ok(blog.getId());
+        return blogService.saveBlog(blog);
+    }
+
+    @GetMapping("/{id}")
+    public Result queryBlogById(@PathVariable("id") Long id, HttpServletRequest request) {
+        uvCounter.record(UvCounter.TYPE_BLOG, id, request);
+        return blogService.queryBlogById(id);
+    }
+
+    /**
+     * 查询博文的UV
+     *
+     * @param id    博文id
+     * @param begin 开始日期, 格式为yyyy-MM-dd, 不传时为当天
+     * @param end   结束日期, 格式为yyyy-MM-dd, 不传时与开始日期相同
+     * @return UV
+     */
+    @GetMapping("/{id}/uv")
+    public Result queryBlogUv(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "begin", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate begin,
+            @RequestParam(value = "end", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+        begin = begin == null ? LocalDate.now() : begin;
+        Long uv = uvCounter.count(UvCounter.TYPE_BLOG, id, begin, end == null ? begin : end);
+        return uv == null ? Result.fail("日期范围无效！") : Result.ok(uv);
     }
 
+    @RateLimit(type = RateLimit.LimitType.USER, permits = 10, window = 10)
     @PutMapping("/like/{id}")
     public Result likeBlog(@PathVariable("id") Long id) {
-        // 修改点赞数量
-        blogService.update()
-                .setSql("liked = liked + 1").eq("id", id).update();
-        return Result.ok();
+        return blogService.likeBlog(id);
     }
 
     @GetMapping("/of/me")
-    public Result queryMyBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 获取登录用户
-        UserDTO user = UserHolder.getUser();
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .eq("user_id", user.getId()).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        return Result.ok(records);
+    public Result queryMyBlog(
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return blogService.queryMyBlog(current, cursor);
     }
 
     @GetMapping("/hot")
     public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-        });
-        return Result.ok(records);
+        return blogService.queryHotBlog(current);
+    }
+
+    /**
+     * 滚动查询关注的人发布的博文
+     *
+     * @param max    上一页返回的minTime, 第一页传当前时间
+     * @param offset 上一页返回的offset, 第一页不传
+     * @return 滚动分页结果
+     */
+    @GetMapping("/of/follow")
+    public Result queryBlogOfFollow(
+            @RequestParam("lastId") Long max,
+            @RequestParam(value = "offset", defaultValue = "0") Integer offset) {
+        return blogService.queryBlogOfFollow(max, offset);
+    }
+
+    /**
+     * 滚动查询热门博文
+     *
+     * @param max    上一页返回的minScore, 第一页不传
+     * @param offset 上一页返回的offset, 第一页不传
+     * @return 滚动分页结果
+     */
+    @GetMapping("/hot/scroll")
+    public Result queryHotBlogScroll(
+            @RequestParam(value = "max", required = false) Double max,
+            @RequestParam(value = "offset", defaultValue = "0") Integer offset) {
+        return blogService.queryHotBlogScroll(max == null ? Double.MAX_VALUE : max, offset);
     }
 }
@@ -1,9 +1,11 @@
 package com.hmdp.controller;
 
 
-import org.springframework.web.bind.annotation.RequestMapping;
+import com.hmdp.dto.Result;
+import com.hmdp.service.IFollowService;
+import org.springframework.web.bind.annotation.*;
 
-import org.springframework.web.bind.annotation.RestController;
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -17,4 +19,33 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/follow")
 public class FollowController {
 
+    @Resource
+    private IFollowService followService;
+
+    @PutMapping("/{id}/{isFollow}")
+    public Result follow(@PathVariable("id") Long followUserId, @PathVariable("isFollow") Boolean isFollow) {
+        return followService.follow(followUserId, isFollow);
+    }
+
+    @GetMapping("/or/not/{id}")
+    public Result isFollow(@PathVariable("id") Long followUserId) {
+        return followService.isFollow(followUserId);
+    }
+
+    @GetMapping("/common/{id}")
+    public Result followCommons(@PathVariable("id") Long id) {
+        return followService.followCommons(id);
+    }
+
+    @GetMapping("/followers/{id}")
+    public Result queryFollowers(@PathVariable("id") Long id,
+                                 @RequestParam(value = "lastId", defaultValue = "0") Long lastId) {
+        return followService.queryFollowers(id, lastId);
+    }
+
+    @GetMapping("/followees/{id}")
+    public Result queryFollowees(@PathVariable("id") Long id,
+                                 @RequestParam(value = "lastId", defaultValue = "0") Long lastId) {
+        return followService.queryFollowees(id, lastId);
+    }
 }
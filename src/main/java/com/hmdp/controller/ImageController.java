@@ -0,0 +1,31 @@
+package com.hmdp.controller;
+
+import com.hmdp.utils.ImageServer;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 上传图片的访问, 路径与原先nginx中的一致: /imgs/blogs/...
+ */
+@RestController
+@RequestMapping("imgs")
+public class ImageController {
+
+    @Resource
+    private ImageServer imageServer;
+
+    @GetMapping("/**")
+    public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 去掉/imgs前缀后的部分即为文件名
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String name = path.substring("/imgs".length());
+        imageServer.serve(name, request, response);
+    }
+}
@@ -1,15 +1,17 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
-import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UvCounter;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.time.LocalDate;
 
 /**
  * <p>
@@ -26,6 +28,9 @@ public class ShopController {
     @Resource
     public IShopService shopService;
 
+    @Resource
+    private UvCounter uvCounter;
+
     /**
      * 根据id查询商铺信息
      *
@@ -33,10 +38,33 @@ public class ShopController {
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
+    public Result queryShopById(@PathVariable("id") Long id, HttpServletRequest request, WebRequest webRequest) {
+        uvCounter.record(UvCounter.TYPE_SHOP, id, request);
+        // 商铺未更新过时直接返回304, 不读取缓存
+        if (webRequest.checkNotModified(shopService.queryShopETag(id))) {
+            return null;
+        }
         return shopService.queryShopById(id);
     }
 
+    /**
+     * 查询商铺的UV
+     *
+     * @param id    商铺id
+     * @param begin 开始日期, 格式为yyyy-MM-dd, 不传时为当天
+     * @param end   结束日期, 格式为yyyy-MM-dd, 不传时与开始日期相同
+     * @return UV
+     */
+    @GetMapping("/{id}/uv")
+    public Result queryShopUv(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "begin", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate begin,
+            @RequestParam(value = "end", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+        begin = begin == null ? LocalDate.now() : begin;
+        Long uv = uvCounter.count(UvCounter.TYPE_SHOP, id, begin, end == null ? begin : end);
+        return uv == null ? Result.fail("日期范围无效！") : Result.ok(uv);
+    }
+
     /**
      * 新增商铺信息
      *
@@ -45,10 +73,7 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -67,19 +92,20 @@ public class ShopController {
      *
      * @param typeId  商铺类型
      * @param current 页码
+     * @param cursor  游标分页的续传令牌, 第一页传空字符串, 不传时按页码分页
+     * @param x       经度, 与纬度同时传入时按距离由近到远分页
+     * @param y       纬度
      * @return 商铺列表
      */
     @GetMapping("/of/type")
     public Result queryShopByType(
             @RequestParam("typeId") Integer typeId,
-            @RequestParam(value = "current", defaultValue = "1") Integer current
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "x", required = false) Double x,
+            @RequestParam(value = "y", required = false) Double y
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .eq("type_id", typeId)
-                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return shopService.queryShopByType(typeId, current, cursor, x, y);
     }
 
     /**
@@ -94,11 +120,6 @@ public class ShopController {
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return shopService.queryShopByName(name, current);
     }
 }
@@ -6,6 +6,7 @@ import com.hmdp.service.IShopTypeService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
 
@@ -25,10 +26,14 @@ public class ShopTypeController {
 
     /**
      * 查询商店类型列表, 利用Redis缓存
-     *
+     * 客户端携带的ETag未变化时直接返回304, 不读取列表
      */
     @GetMapping("list")
-    public Result queryTypeList() {
+    public Result queryTypeList(WebRequest webRequest) {
+        String etag = typeService.queryTypeListETag();
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         return typeService.queryTypeList();
     }
 }
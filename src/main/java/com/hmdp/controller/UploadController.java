@@ -1,31 +1,38 @@
 package com.hmdp.controller;
 
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.Result;
-import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.ImageStore;
+import com.hmdp.utils.ThumbnailPipeline;
+import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.annotation.Resource;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
 
 @Slf4j
 @RestController
 @RequestMapping("upload")
 public class UploadController {
 
+    @Resource
+    private ImageStore imageStore;
+
+    @Resource
+    private ThumbnailPipeline thumbnailPipeline;
+
     @PostMapping("blog")
     public Result uploadImage(@RequestParam("file") MultipartFile image) {
-        try {
-            // 获取原始文件名称
-            String originalFilename = image.getOriginalFilename();
-            // 生成新文件名
-            String fileName = createNewFileName(originalFilename);
-            // 保存文件
-            image.transferTo(new File(SystemConstants.IMAGE_UPLOAD_DIR, fileName));
+        try (InputStream in = image.getInputStream()) {
+            // 按内容保存文件, 相同的图片只保存一份, 并记录上传者持有的引用
+            String fileName = imageStore.save(in, image.getOriginalFilename(), UserHolder.getUser().getId());
+            if (fileName == null) {
+                return Result.fail("不支持的文件类型");
+            }
+            // 异步生成缩略图
+            thumbnailPipeline.submit(fileName);
             // 返回结果
             log.debug("文件上传成功，{}", fileName);
             return Result.ok(fileName);
@@ -34,30 +41,30 @@ public class UploadController {
         }
     }
 
-    @GetMapping("/blog/delete")
-    public Result deleteBlogImg(@RequestParam("name") String filename) {
-        File file = new File(SystemConstants.IMAGE_UPLOAD_DIR, filename);
-        if (file.isDirectory()) {
+    /**
+     * 查询图片已生成的缩略图, 未生成完成时只返回原图
+     */
+    @GetMapping("/blog/variants")
+    public Result queryVariants(@RequestParam("name") String filename) {
+        if (!ImageStore.isContentName(filename)) {
             return Result.fail("错误的文件名称");
         }
-        FileUtil.del(file);
-        return Result.ok();
+        return Result.ok(thumbnailPipeline.queryVariants(filename));
     }
 
-    private String createNewFileName(String originalFilename) {
-        // 获取后缀
-        String suffix = StrUtil.subAfter(originalFilename, ".", true);
-        // 生成目录
-        String name = UUID.randomUUID().toString();
-        int hash = name.hashCode();
-        int d1 = hash & 0xF;
-        int d2 = (hash >> 4) & 0xF;
-        // 判断目录是否存在
-        File dir = new File(SystemConstants.IMAGE_UPLOAD_DIR, StrUtil.format("/blogs/{}/{}", d1, d2));
-        if (!dir.exists()) {
-            dir.mkdirs();
+    /**
+     * 删除上传的图片, 只能删除自己上传的
+     */
+    @DeleteMapping("/blog/delete")
+    public Result deleteBlogImg(@RequestParam("name") String filename) {
+        try {
+            // 释放当前用户持有的一次引用, 没有其他引用时才删除文件
+            if (!imageStore.release(filename, UserHolder.getUser().getId())) {
+                return Result.fail("图片不存在或不是你上传的");
+            }
+            return Result.ok();
+        } catch (IOException e) {
+            throw new RuntimeException("文件删除失败", e);
         }
-        // 生成文件名
-        return StrUtil.format("/blogs/{}/{}/{}.{}", d1, d2, name, suffix);
     }
 }
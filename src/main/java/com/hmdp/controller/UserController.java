@@ -5,8 +5,10 @@ import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.UserInfo;
+import com.hmdp.service.ISignService;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.RateLimit;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -33,9 +35,17 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private ISignService signService;
+
     /**
      * 发送手机验证码
+     * 同一手机号60秒内只能发送1次, 同一IP每小时最多发送20次
      */
+    @RateLimit(type = RateLimit.LimitType.PARAM, param = "phone", permits = 1, window = 60,
+            message = "验证码发送过于频繁, 请稍后再试")
+    @RateLimit(type = RateLimit.LimitType.IP, permits = 20, window = 3600,
+            message = "验证码发送过于频繁, 请稍后再试")
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
         return userService.sendCode(phone, session);
@@ -57,9 +67,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout() {
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(@RequestHeader("authorization") String token) {
+        return userService.logout(token);
     }
 
     @GetMapping("/me")
@@ -81,4 +90,27 @@ public class UserController {
         // 返回
         return Result.ok(info);
     }
+
+    @PostMapping("/sign")
+    public Result sign() {
+        return signService.sign();
+    }
+
+    /**
+     * 查询连续签到天数
+     */
+    @GetMapping("/sign/count")
+    public Result signCount() {
+        return signService.signCount();
+    }
+
+    /**
+     * 查询某月的签到记录
+     *
+     * @param month 月份, 格式为yyyyMM, 不传时查询当月
+     */
+    @GetMapping("/sign/month")
+    public Result querySignMonth(@RequestParam(value = "month", required = false) String month) {
+        return signService.querySignMonth(month);
+    }
 }
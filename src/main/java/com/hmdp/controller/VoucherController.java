@@ -5,6 +5,7 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.hmdp.service.IVoucherService;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.annotation.Resource;
 
@@ -51,7 +52,11 @@ public class VoucherController {
      * @return 优惠券列表
      */
     @GetMapping("/list/{shopId}")
-    public Result queryVoucherOfShop(@PathVariable("shopId") Long shopId) {
-       return voucherService.queryVoucherOfShop(shopId);
+    public Result queryVoucherOfShop(@PathVariable("shopId") Long shopId, WebRequest webRequest) {
+        // 优惠券及库存未变化时直接返回304
+        if (webRequest.checkNotModified(voucherService.queryVoucherETag(shopId))) {
+            return null;
+        }
+        return voucherService.queryVoucherOfShop(shopId);
     }
 }
@@ -0,0 +1,15 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class ImageVariantsDTO {
+    // 原图文件名
+    private String name;
+    // 缩略图是否已生成完成, 未完成时只能使用原图
+    private Boolean ready;
+    // 宽度 -> 缩略图文件名, 宽度升序
+    private Map<Integer, String> variants;
+}
@@ -9,4 +9,10 @@ public class ScrollResult {
     private List<?> list;
     private Long minTime;
     private Integer offset;
+    // 按热度等非时间分数滚动分页时, 本页最小的分数
+    private Double minScore;
+    // 按(时间, id)滚动分页时, 本页最后一条记录的id
+    private Long lastId;
+    // 游标分页时, 下一页的续传令牌, 为空表示没有下一页
+    private String next;
 }
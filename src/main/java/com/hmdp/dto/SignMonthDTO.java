@@ -0,0 +1,15 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SignMonthDTO {
+    private Integer year;
+    private Integer month;
+    // 当月签到的天数
+    private Integer count;
+    // 当月签到的日期, 升序
+    private List<Integer> days;
+}
@@ -0,0 +1,20 @@
+package com.hmdp.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmdp.entity.Sign;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ */
+public interface SignMapper extends BaseMapper<Sign> {
+
+    /**
+     * 批量写入月度签到记录, 已存在时与原记录按位或合并
+     */
+    int upsertBatch(@Param("signs") List<Sign> signs);
+}
@@ -1,8 +1,11 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +16,21 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    Result saveBlog(Blog blog);
+
+    Result queryBlogById(Long id);
+
+    Result queryHotBlog(Integer current);
+
+    Result queryMyBlog(Integer current, String cursor);
+
+    Result queryHotBlogScroll(Double max, Integer offset);
+
+    Result queryBlogOfFollow(Long max, Integer offset);
+
+    List<Blog> queryBlogByIds(List<Long> ids);
+
+    Result likeBlog(Long id);
+
+    void fillIsLike(List<Blog> blogs);
 }
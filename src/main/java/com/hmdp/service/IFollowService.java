@@ -1,8 +1,12 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Follow;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +17,17 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IFollowService extends IService<Follow> {
 
+    Result follow(Long followUserId, Boolean isFollow);
+
+    Result isFollow(Long followUserId);
+
+    Result followCommons(Long id);
+
+    Result queryFollowers(Long id, Long lastId);
+
+    Result queryFollowees(Long id, Long lastId);
+
+    List<Long> queryFollowerIds(Long followUserId, Long lastUserId, int count);
+
+    Set<Long> intersectFollowees(Long userId, String otherKey);
 }
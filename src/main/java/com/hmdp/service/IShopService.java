@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 
+import java.util.List;
+
 /**
  * <p>
  * 服务类
@@ -16,5 +18,17 @@ public interface IShopService extends IService<Shop> {
 
     Result queryShopById(Long id);
 
+    String queryShopETag(Long id);
+
+    Result saveShop(Shop shop);
+
     Result updateShop(Shop shop);
+
+    Result queryShopByType(Integer typeId, Integer current, String cursor, Double x, Double y);
+
+    Result queryShopByName(String name, Integer current);
+
+    List<Shop> queryShopByIds(List<Long> ids);
+
+    void loadShopGeo();
 }
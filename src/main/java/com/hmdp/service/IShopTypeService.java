@@ -15,4 +15,6 @@ import com.hmdp.entity.ShopType;
 public interface IShopTypeService extends IService<ShopType> {
 
     Result queryTypeList();
+
+    String queryTypeListETag();
 }
@@ -16,5 +16,7 @@ public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    String queryVoucherETag(Long shopId);
+
     void addSeckillVoucher(Voucher voucher);
 }
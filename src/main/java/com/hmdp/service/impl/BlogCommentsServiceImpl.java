@@ -1,10 +1,41 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.extension.conditions.query.QueryChainWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BlogCounterFlusher;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -14,7 +45,181 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IBlogService blogService;
+
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private BlogCounterFlusher blogCounterFlusher;
+
+    private final ScheduledExecutorService commentsFlushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    private void init() {
+        commentsFlushExecutor.scheduleWithFixedDelay(
+                () -> blogCounterFlusher.flush(BLOG_COMMENTS_DELTA_KEY, "comments"), BLOG_COMMENTS_FLUSH_INTERVAL, BLOG_COMMENTS_FLUSH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        commentsFlushExecutor.shutdown();
+        // 停机前同步剩余的增量
+        blogCounterFlusher.flush(BLOG_COMMENTS_DELTA_KEY, "comments");
+    }
+
+    /**
+     * 发表评论
+     * 评论只有两级: 回复一级评论或其下的回复时, 都归入该一级评论下, answerId记录实际回复的评论
+     *
+     * @param comment 评论, answerId为空或0时表示一级评论
+     * @return 评论id
+     */
+    @Override
+    public Result saveComment(BlogComments comment) {
+        // 1. 查询博文
+        Long blogId = comment.getBlogId();
+        if (blogId == null || blogService.queryBlogByIds(Collections.singletonList(blogId)).isEmpty()) {
+            return Result.fail("博文不存在！");
+        }
+
+        // 2. 确定所属的一级评论
+        Long answerId = comment.getAnswerId();
+        if (answerId == null || answerId == 0) {
+            comment.setParentId(0L);
+            comment.setAnswerId(0L);
+        } else {
+            BlogComments answer = getById(answerId);
+            if (answer == null || !blogId.equals(answer.getBlogId())) {
+                return Result.fail("回复的评论不存在！");
+            }
+            comment.setParentId(answer.getParentId() == 0 ? answer.getId() : answer.getParentId());
+        }
+
+        // 3. 保存评论, 创建时间精确到秒, 与数据库中保存的值一致, 作为分页游标时不会出现偏差
+        comment.setId(null);
+        comment.setUserId(UserHolder.getUser().getId());
+        comment.setLiked(0);
+        comment.setStatus(false);
+        comment.setCreateTime(LocalDateTime.now().withNano(0));
+        save(comment);
+
+        // 4. 累加评论数增量, 由后台任务批量同步到数据库
+        stringRedisTemplate.opsForHash().increment(BLOG_COMMENTS_DELTA_KEY, blogId.toString(), 1);
+        return Result.ok(comment.getId());
+    }
+
+    /**
+     * 删除评论, 删除一级评论时一并删除其下的回复
+     * 评论与回复在同一个事务中删除, 事务提交后才累加评论数增量, 回滚时不会留下孤立的回复或错误的增量
+     *
+     * @param id 评论id
+     * @return 无
+     */
+    @Override
+    @Transactional
+    public Result deleteComment(Long id) {
+        BlogComments comment = getById(id);
+        if (comment == null) {
+            return Result.ok();
+        }
+        if (!comment.getUserId().equals(UserHolder.getUser().getId())) {
+            return Result.fail("只能删除自己的评论！");
+        }
+        int count = getBaseMapper().deleteById(id);
+        if (comment.getParentId() == 0) {
+            count += getBaseMapper().delete(query().getWrapper()
+                    .eq("blog_id", comment.getBlogId()).eq("parent_id", id));
+        }
+        if (count > 0) {
+            int deleted = count;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    stringRedisTemplate.opsForHash().increment(BLOG_COMMENTS_DELTA_KEY, comment.getBlogId().toString(), -deleted);
+                }
+            });
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 滚动查询博文的一级评论, 按(创建时间, id)倒序
+     *
+     * @param blogId   博文id
+     * @param lastTime 上一页最后一条评论的创建时间戳, 第一页不传
+     * @param lastId   上一页最后一条评论的id, 第一页不传
+     * @return 滚动分页结果
+     */
+    @Override
+    public Result queryComments(Long blogId, Long lastTime, Long lastId) {
+        QueryChainWrapper<BlogComments> query = query().eq("blog_id", blogId).eq("parent_id", 0);
+        if (lastTime != null && lastId != null) {
+            LocalDateTime time = toLocalDateTime(lastTime);
+            query.and(w -> w.lt("create_time", time).or(o -> o.eq("create_time", time).lt("id", lastId)));
+        }
+        List<BlogComments> comments = query.orderByDesc("create_time", "id")
+                .last("LIMIT " + SystemConstants.MAX_PAGE_SIZE).list();
+        return Result.ok(toScrollResult(comments));
+    }
+
+    /**
+     * 滚动查询一级评论下的回复, 按(创建时间, id)正序
+     *
+     * @param parentId 一级评论id
+     * @param lastTime 上一页最后一条回复的创建时间戳, 第一页不传
+     * @param lastId   上一页最后一条回复的id, 第一页不传
+     * @return 滚动分页结果
+     */
+    @Override
+    public Result queryReplies(Long parentId, Long lastTime, Long lastId) {
+        BlogComments parent = getById(parentId);
+        if (parent == null || parent.getParentId() != 0) {
+            return Result.ok(new ScrollResult());
+        }
+        QueryChainWrapper<BlogComments> query = query().eq("blog_id", parent.getBlogId()).eq("parent_id", parentId);
+        if (lastTime != null && lastId != null) {
+            LocalDateTime time = toLocalDateTime(lastTime);
+            query.and(w -> w.gt("create_time", time).or(o -> o.eq("create_time", time).gt("id", lastId)));
+        }
+        List<BlogComments> replies = query.orderByAsc("create_time", "id")
+                .last("LIMIT " + SystemConstants.MAX_PAGE_SIZE).list();
+        return Result.ok(toScrollResult(replies));
+    }
+
+    private ScrollResult toScrollResult(List<BlogComments> comments) {
+        ScrollResult r = new ScrollResult();
+        if (comments.isEmpty()) {
+            r.setList(comments);
+            return r;
+        }
+        // 批量查询评论者
+        Map<Long, UserDTO> users = userService.queryUserDTOByIds(
+                comments.stream().map(BlogComments::getUserId).collect(Collectors.toSet()));
+        comments.forEach(comment -> {
+            UserDTO user = users.get(comment.getUserId());
+            if (user != null) {
+                comment.setName(user.getNickName());
+                comment.setIcon(user.getIcon());
+            }
+        });
+        BlogComments last = comments.get(comments.size() - 1);
+        r.setList(comments);
+        r.setMinTime(last.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        r.setLastId(last.getId());
+        return r;
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+    }
+
 }
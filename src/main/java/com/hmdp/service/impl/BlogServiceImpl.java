@@ -1,11 +1,58 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IFollowService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BlogCounterFlusher;
+import com.hmdp.utils.FeedPusher;
+import com.hmdp.utils.PageCursor;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +61,530 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    // 重建热门排行时每批读取的博文数量
+    private static final int HOT_REBUILD_BATCH_SIZE = 1000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private IFollowService followService;
+
+    @Resource
+    private FeedPusher feedPusher;
+
+    @Resource
+    private BlogCounterFlusher blogCounterFlusher;
+
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT;
+    static {
+        LIKE_SCRIPT = new DefaultRedisScript<>();
+        LIKE_SCRIPT.setLocation(new ClassPathResource("scripts/blog_like.lua"));
+        LIKE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final ScheduledExecutorService likeFlushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    // "用户id:博文id" -> 是否点赞, 列表页反复出现的博文不再访问Redis; 点赞状态变化时失效
+    private final TimedCache<String, Boolean> likedLocalCache =
+            CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(BLOG_LIKED_LOCAL_TTL));
+
+    @PostConstruct
+    private void init() {
+        likedLocalCache.schedulePrune(TimeUnit.SECONDS.toMillis(BLOG_LIKED_LOCAL_TTL));
+        likeFlushExecutor.scheduleWithFixedDelay(
+                () -> blogCounterFlusher.flush(BLOG_LIKED_DELTA_KEY, "liked"), BLOG_LIKED_FLUSH_INTERVAL, BLOG_LIKED_FLUSH_INTERVAL, TimeUnit.SECONDS);
+        // 热门排行不存在时, 从数据库重建
+        likeFlushExecutor.execute(this::rebuildHotIndex);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        likeFlushExecutor.shutdown();
+        likedLocalCache.cancelPruneSchedule();
+        // 停机前同步剩余的增量
+        blogCounterFlusher.flush(BLOG_LIKED_DELTA_KEY, "liked");
+    }
+
+    /**
+     * 保存博文, 并以发布时间作为初始热度加入热门排行
+     *
+     * @param blog 博文
+     * @return 博文id
+     */
+    @Override
+    public Result saveBlog(Blog blog) {
+        // 获取登录用户
+        blog.setUserId(UserHolder.getUser().getId());
+        // 保存探店博文
+        save(blog);
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, blog.getId().toString(), hotTerm(now));
+        // 写入发件箱, 并异步推送到粉丝的收件箱
+        feedPusher.publish(blog.getUserId(), blog.getId(), now);
+        // 返回id
+        return Result.ok(blog.getId());
+    }
+
+    /**
+     * 查询博文详情
+     *
+     * @param id 博文id
+     * @return 博文
+     */
+    @Override
+    public Result queryBlogById(Long id) {
+        List<Blog> blogs = queryBlogByIds(Collections.singletonList(id));
+        if (blogs.isEmpty()) {
+            return Result.fail("博文不存在！");
+        }
+        fillUser(blogs);
+        fillIsLike(blogs);
+        return Result.ok(blogs.get(0));
+    }
+
+    /**
+     * 滚动查询关注的人发布的博文
+     * 收件箱按发布时间排序, 以上一页的最小时间戳及其重复次数作为游标, 时间戳相同的博文不会重复或遗漏;
+     * 关注了拉模式的作者时, 将其发件箱与收件箱归并后再分页
+     *
+     * @param max    上一页的最小时间戳, 第一页传当前时间
+     * @param offset 上一页中与最小时间戳相同的博文数量
+     * @return 滚动分页结果
+     */
+    @Override
+    public Result queryBlogOfFollow(Long max, Integer offset) {
+        // 1. 查询收件箱, 以及关注的拉模式作者的发件箱
+        Long userId = UserHolder.getUser().getId();
+        List<String> sources = new ArrayList<>();
+        sources.add(FEED_KEY + userId);
+        // 关注集合与拉模式作者集合在Redis中求交集, 不再查询数据库
+        for (Long authorId : followService.intersectFollowees(userId, FEED_PULL_AUTHORS_KEY)) {
+            sources.add(FEED_OUTBOX_KEY + authorId);
+        }
+        List<ZSetOperations.TypedTuple<String>> tuples = sources.size() == 1
+                ? new ArrayList<>(rangeFeed(sources.get(0), max, offset, SystemConstants.MAX_PAGE_SIZE))
+                : mergeFeeds(sources, max, offset);
+        if (tuples.isEmpty()) {
+            return Result.ok(new ScrollResult());
+        }
+
+        // 2. 解析博文id, 并统计与本页最小时间戳相同的博文数量
+        List<Long> ids = new ArrayList<>(tuples.size());
+        long minTime = 0;
+        int sameCount = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            ids.add(Long.valueOf(tuple.getValue()));
+            long time = tuple.getScore() == null ? 0 : tuple.getScore().longValue();
+            if (sameCount > 0 && time == minTime) {
+                sameCount++;
+            } else {
+                minTime = time;
+                sameCount = 1;
+            }
+        }
+        if (minTime == max) {
+            sameCount += offset;
+        }
+
+        // 3. 批量查询博文及作者
+        List<Blog> blogs = queryBlogByIds(ids);
+        fillUser(blogs);
+        fillIsLike(blogs);
+        ScrollResult result = new ScrollResult();
+        result.setList(blogs);
+        result.setMinTime(minTime);
+        result.setOffset(sameCount);
+        return Result.ok(result);
+    }
+
+    /**
+     * 按页码查询热门博文, 博文id从热门排行中读取, 不再扫描数据库
+     *
+     * @param current 页码
+     * @return 博文列表
+     */
+    @Override
+    public Result queryHotBlog(Integer current) {
+        long start = (long) (current - 1) * SystemConstants.MAX_PAGE_SIZE;
+        Set<String> ids = stringRedisTemplate.opsForZSet()
+                .reverseRange(BLOG_HOT_KEY, start, start + SystemConstants.MAX_PAGE_SIZE - 1);
+        if (ids == null || ids.isEmpty()) {
+            if (BooleanUtil.isFalse(stringRedisTemplate.hasKey(BLOG_HOT_READY_KEY))) {
+                // 热门排行尚未建立, 降级为查询数据库
+                List<Blog> records = query().orderByDesc("liked")
+                        .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE))
+                        .getRecords();
+                fillUser(records);
+                fillIsLike(records);
+                return Result.ok(records);
+            }
+            return Result.ok(Collections.emptyList());
+        }
+        List<Blog> blogs = queryBlogByIds(ids.stream().map(Long::valueOf).collect(Collectors.toList()));
+        fillUser(blogs);
+        fillIsLike(blogs);
+        return Result.ok(blogs);
+    }
+
+    /**
+     * 查询当前用户的博文, 按id正序, 与改为游标分页之前按(user_id)索引返回的顺序一致
+     * 传入cursor时按(user_id, id)索引游标分页, 翻页期间发布的新博文不会导致重复或遗漏;
+     * 否则兼容按页码分页, 返回博文列表, 但不再执行COUNT查询
+     *
+     * @param current 页码, 按页码分页时使用
+     * @param cursor  上一页返回的续传令牌, 第一页传空字符串
+     * @return 博文列表
+     */
+    @Override
+    public Result queryMyBlog(Integer current, String cursor) {
+        Long userId = UserHolder.getUser().getId();
+        int pageSize = SystemConstants.MAX_PAGE_SIZE;
+        if (cursor == null) {
+            List<Blog> records = query().eq("user_id", userId).orderByAsc("id")
+                    .page(new Page<>(current, pageSize, false)).getRecords();
+            fillIsLike(records);
+            return Result.ok(records);
+        }
+        long lastId = 0;
+        if (!cursor.isEmpty()) {
+            long[] keys = PageCursor.decode(cursor, 1);
+            if (keys == null) {
+                return Result.fail("无效的分页游标！");
+            }
+            lastId = keys[0];
+        }
+        // 多查一条, 判断是否还有下一页
+        List<Blog> blogs = query().eq("user_id", userId).gt("id", lastId)
+                .orderByAsc("id").last("LIMIT " + (pageSize + 1)).list();
+        ScrollResult r = new ScrollResult();
+        if (blogs.size() > pageSize) {
+            blogs = blogs.subList(0, pageSize);
+            r.setNext(PageCursor.encode(blogs.get(pageSize - 1).getId()));
+        }
+        fillIsLike(blogs);
+        r.setList(blogs);
+        return Result.ok(r);
+    }
+
+    private Set<ZSetOperations.TypedTuple<String>> rangeFeed(String key, long max, long offset, long count) {
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(key, 0, max, offset, count);
+        return tuples == null ? Collections.emptySet() : tuples;
+    }
+
+    /**
+     * 多路归并收件箱与发件箱
+     * 每个来源最多读取offset + 一页的数量, 一次管道读完; 排序规则与Redis一致: 分数降序, 分数相同时member降序,
+     * 保证翻页时顺序稳定; 同一篇博文可能同时出现在收件箱与发件箱中, 归并时去重
+     */
+    @SuppressWarnings("unchecked")
+    private List<ZSetOperations.TypedTuple<String>> mergeFeeds(List<String> sources, long max, int offset) {
+        int limit = offset + SystemConstants.MAX_PAGE_SIZE;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String source : sources) {
+                connection.zRevRangeByScoreWithScores(source.getBytes(StandardCharsets.UTF_8), 0, max, 0, limit);
+            }
+            return null;
+        });
+
+        Comparator<ZSetOperations.TypedTuple<String>> order = Comparator
+                .comparing((ZSetOperations.TypedTuple<String> t) -> t.getScore() == null ? 0 : t.getScore())
+                .thenComparing(ZSetOperations.TypedTuple::getValue)
+                .reversed();
+        // 堆中保存每个来源的迭代器, 按各自当前的队首元素排序
+        PriorityQueue<PeekingIterator> heap = new PriorityQueue<>(sources.size(),
+                (a, b) -> order.compare(a.head, b.head));
+        for (Object result : results) {
+            Iterator<ZSetOperations.TypedTuple<String>> it =
+                    ((Set<ZSetOperations.TypedTuple<String>>) result).iterator();
+            if (it.hasNext()) {
+                heap.add(new PeekingIterator(it));
+            }
+        }
+
+        List<ZSetOperations.TypedTuple<String>> page = new ArrayList<>(SystemConstants.MAX_PAGE_SIZE);
+        String lastValue = null;
+        int skipped = 0;
+        while (!heap.isEmpty() && page.size() < SystemConstants.MAX_PAGE_SIZE) {
+            PeekingIterator top = heap.poll();
+            ZSetOperations.TypedTuple<String> tuple = top.head;
+            if (top.advance()) {
+                heap.add(top);
+            }
+            // 相同的博文分数也相同, 归并后一定相邻
+            if (tuple.getValue().equals(lastValue)) {
+                continue;
+            }
+            lastValue = tuple.getValue();
+            // 跳过上一页已返回的、与最小时间戳相同的博文
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            page.add(tuple);
+        }
+        return page;
+    }
+
+    private static class PeekingIterator {
+        private final Iterator<ZSetOperations.TypedTuple<String>> iterator;
+        private ZSetOperations.TypedTuple<String> head;
+
+        private PeekingIterator(Iterator<ZSetOperations.TypedTuple<String>> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+    }
+
+    /**
+     * 滚动查询热门博文
+     * 热度随点赞实时变化, 按页码翻页会出现重复或遗漏, 所以以上一页的最小热度及其重复次数作为游标
+     *
+     * @param max    上一页的最小热度, 第一页不传
+     * @param offset 上一页中与最小热度相同的博文数量
+     * @return 滚动分页结果
+     */
+    @Override
+    public Result queryHotBlogScroll(Double max, Integer offset) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                BLOG_HOT_KEY, -Double.MAX_VALUE, max, offset, SystemConstants.MAX_PAGE_SIZE);
+        if (tuples == null || tuples.isEmpty()) {
+            return Result.ok(new ScrollResult());
+        }
+
+        // 解析博文id, 并统计与本页最小热度相同的博文数量
+        List<Long> ids = new ArrayList<>(tuples.size());
+        double minScore = 0;
+        int sameCount = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            ids.add(Long.valueOf(tuple.getValue()));
+            double score = tuple.getScore() == null ? 0 : tuple.getScore();
+            if (sameCount > 0 && score == minScore) {
+                sameCount++;
+            } else {
+                minScore = score;
+                sameCount = 1;
+            }
+        }
+        // 最小热度与上一页相同时, 跳过的数量需要累加
+        if (minScore == max) {
+            sameCount += offset;
+        }
+
+        List<Blog> blogs = queryBlogByIds(ids);
+        fillUser(blogs);
+        fillIsLike(blogs);
+        ScrollResult result = new ScrollResult();
+        result.setList(blogs);
+        result.setMinScore(minScore);
+        result.setOffset(sameCount);
+        return Result.ok(result);
+    }
+
+    /**
+     * 批量查询博文, 优先读取缓存, 未命中的博文通过一次数据库查询补齐并写回缓存
+     *
+     * @param ids 博文id
+     * @return 按id顺序排列的博文, 不存在的博文会被跳过
+     */
+    @Override
+    public List<Blog> queryBlogByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 1. 批量读取缓存
+        List<String> keys = ids.stream().map(id -> CACHE_BLOG_KEY + id).collect(Collectors.toList());
+        List<String> jsons = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<Long, Blog> blogMap = new HashMap<>(ids.size() * 2);
+        List<Long> missIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = jsons == null ? null : jsons.get(i);
+            if (json == null) {
+                missIds.add(ids.get(i));
+            } else {
+                blogMap.put(ids.get(i), JSONUtil.toBean(json, Blog.class));
+            }
+        }
+
+        // 2. 未命中的博文一次查询数据库, 并通过管道写回缓存
+        if (!missIds.isEmpty()) {
+            List<Blog> missBlogs = listByIds(missIds);
+            Map<String, String> cacheValues = new LinkedHashMap<>();
+            for (Blog blog : missBlogs) {
+                blogMap.put(blog.getId(), blog);
+                cacheValues.put(CACHE_BLOG_KEY + blog.getId(), JSONUtil.toJsonStr(blog));
+            }
+            long ttl = TimeUnit.MINUTES.toSeconds(CACHE_BLOG_TTL);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                cacheValues.forEach((key, value) -> connection.setEx(
+                        key.getBytes(StandardCharsets.UTF_8), ttl, value.getBytes(StandardCharsets.UTF_8)));
+                return null;
+            });
+        }
+
+        // 3. 按传入的顺序返回
+        List<Blog> blogs = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Blog blog = blogMap.get(id);
+            if (blog != null) {
+                blogs.add(blog);
+            }
+        }
+        return blogs;
+    }
+
+    private void fillUser(List<Blog> blogs) {
+        // 批量查询作者, 已注销的作者不填充
+        Map<Long, UserDTO> users = userService.queryUserDTOByIds(
+                blogs.stream().map(Blog::getUserId).collect(Collectors.toSet()));
+        blogs.forEach(blog -> {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        });
+    }
+
+    /**
+     * 点赞或取消点赞
+     * 点赞关系保存在Redis的ZSet中, 点赞数的增量由后台任务批量同步到数据库
+     *
+     * @param id 博文id
+     * @return 无
+     */
+    @Override
+    public Result likeBlog(Long id) {
+        // 博文不存在时不记录点赞, 避免任意id进入热门排行
+        if (queryBlogByIds(Collections.singletonList(id)).isEmpty()) {
+            return Result.fail("博文不存在！");
+        }
+        Long userId = UserHolder.getUser().getId();
+        stringRedisTemplate.execute(
+                LIKE_SCRIPT,
+                Arrays.asList(BLOG_LIKED_KEY + id, BLOG_LIKED_DELTA_KEY, BLOG_HOT_KEY),
+                userId.toString(), String.valueOf(System.currentTimeMillis()), id.toString(),
+                BLOG_HOT_EPOCH.toString(), BLOG_HOT_HALF_LIFE.toString());
+        // 点赞状态已变化, 本地缓存失效
+        likedLocalCache.remove(userId + ":" + id);
+        return Result.ok();
+    }
+
+    /**
+     * 批量填充当前用户是否点赞过博文
+     * 先读本地缓存, 未命中的博文通过一次管道执行ZSCORE; 未登录时全部视为未点赞
+     *
+     * @param blogs 博文列表
+     */
+    @Override
+    public void fillIsLike(List<Blog> blogs) {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            blogs.forEach(blog -> blog.setIsLike(false));
+            return;
+        }
+        // 1. 读取本地缓存
+        String prefix = user.getId() + ":";
+        List<Blog> missBlogs = new ArrayList<>();
+        for (Blog blog : blogs) {
+            Boolean isLike = likedLocalCache.get(prefix + blog.getId(), false);
+            if (isLike == null) {
+                missBlogs.add(blog);
+            } else {
+                blog.setIsLike(isLike);
+            }
+        }
+        if (missBlogs.isEmpty()) {
+            return;
+        }
+
+        // 2. 未命中的博文通过一次管道查询
+        byte[] member = user.getId().toString().getBytes(StandardCharsets.UTF_8);
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Blog blog : missBlogs) {
+                connection.zScore((BLOG_LIKED_KEY + blog.getId()).getBytes(StandardCharsets.UTF_8), member);
+            }
+            return null;
+        });
+        for (int i = 0; i < missBlogs.size(); i++) {
+            Blog blog = missBlogs.get(i);
+            boolean isLike = scores.get(i) != null;
+            blog.setIsLike(isLike);
+            likedLocalCache.put(prefix + blog.getId(), isLike);
+        }
+    }
+
+    /**
+     * 热门排行未完整建立时, 按id顺序分批读取全部博文重建
+     * 历史点赞没有时间信息, 按发布时间计入, 即初始热度 = 发布时间项 + ln(1 + 点赞数)
+     * 重建期间的点赞和发布仍会写入热门排行, 所以先写入临时key, 完成后合并, 并记录完成标记;
+     * 中途失败时没有标记, 下次启动会重新执行
+     */
+    private void rebuildHotIndex() {
+        try {
+            if (BooleanUtil.isTrue(stringRedisTemplate.hasKey(BLOG_HOT_READY_KEY))) {
+                return;
+            }
+            // 多个节点同时启动时, 只由一个节点重建
+            Boolean isLock = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_BLOG_HOT_KEY, "1", 10, TimeUnit.MINUTES);
+            if (!BooleanUtil.isTrue(isLock)) {
+                return;
+            }
+            try {
+                // 1. 清理上次中断时残留的临时数据
+                stringRedisTemplate.delete(BLOG_HOT_REBUILD_KEY);
+                long lastId = 0;
+                while (true) {
+                    List<Blog> blogs = query().select("id", "liked", "create_time")
+                            .gt("id", lastId).orderByAsc("id")
+                            .last("LIMIT " + HOT_REBUILD_BATCH_SIZE).list();
+                    if (blogs.isEmpty()) {
+                        break;
+                    }
+                    Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(blogs.size() * 2);
+                    for (Blog blog : blogs) {
+                        long createTime = blog.getCreateTime() == null ? System.currentTimeMillis()
+                                : blog.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                        int liked = blog.getLiked() == null ? 0 : blog.getLiked();
+                        tuples.add(new DefaultTypedTuple<>(blog.getId().toString(), hotTerm(createTime) + Math.log1p(liked)));
+                    }
+                    stringRedisTemplate.opsForZSet().add(BLOG_HOT_REBUILD_KEY, tuples);
+                    lastId = blogs.get(blogs.size() - 1).getId();
+                }
+                // 2. 合并到热门排行, 重建期间已写入的博文取较大的热度
+                stringRedisTemplate.opsForZSet().unionAndStore(BLOG_HOT_KEY,
+                        Collections.singleton(BLOG_HOT_REBUILD_KEY), BLOG_HOT_KEY, RedisZSetCommands.Aggregate.MAX);
+                stringRedisTemplate.delete(BLOG_HOT_REBUILD_KEY);
+                // 3. 记录完成标记
+                stringRedisTemplate.opsForValue().set(BLOG_HOT_READY_KEY, "1");
+            } finally {
+                stringRedisTemplate.delete(LOCK_BLOG_HOT_KEY);
+            }
+        } catch (Exception e) {
+            log.error("重建热门博文排行失败", e);
+        }
+    }
+
+    /**
+     * 热度的时间项, 与blog_like.lua中的计算方式一致
+     */
+    private static double hotTerm(long timeMillis) {
+        return (timeMillis - BLOG_HOT_EPOCH) * Math.log(2) / BLOG_HOT_HALF_LIFE;
+    }
 }
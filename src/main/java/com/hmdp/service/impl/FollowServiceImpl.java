@@ -1,11 +1,31 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.BooleanUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.FOLLOWS_KEY;
+import static com.hmdp.utils.RedisConstants.FOLLOWS_PLACEHOLDER;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +37,164 @@ import org.springframework.stereotype.Service;
 @Service
 public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> implements IFollowService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IUserService userService;
+
+    /**
+     * 关注或取关, 先写数据库, 再写Redis中的关注集合
+     *
+     * @param followUserId 被关注的用户id
+     * @param isFollow     true: 关注; false: 取关
+     * @return 无
+     */
+    @Override
+    public Result follow(Long followUserId, Boolean isFollow) {
+        Long userId = UserHolder.getUser().getId();
+        if (userId.equals(followUserId)) {
+            return Result.fail("不能关注自己");
+        }
+        String key = loadFollowees(userId);
+        if (BooleanUtil.isTrue(isFollow)) {
+            // 1. 关注, 由唯一索引保证不会重复关注
+            Follow follow = new Follow();
+            follow.setUserId(userId);
+            follow.setFollowUserId(followUserId);
+            try {
+                save(follow);
+            } catch (DuplicateKeyException e) {
+                // 已关注, 保证Redis与数据库一致即可
+            }
+            stringRedisTemplate.opsForSet().add(key, followUserId.toString());
+        } else {
+            // 2. 取关
+            remove(query().getWrapper().eq("user_id", userId).eq("follow_user_id", followUserId));
+            stringRedisTemplate.opsForSet().remove(key, followUserId.toString());
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 是否关注了该用户
+     */
+    @Override
+    public Result isFollow(Long followUserId) {
+        Long userId = UserHolder.getUser().getId();
+        Boolean isMember = stringRedisTemplate.opsForSet().isMember(loadFollowees(userId), followUserId.toString());
+        return Result.ok(BooleanUtil.isTrue(isMember));
+    }
+
+    /**
+     * 查询当前用户与目标用户的共同关注
+     */
+    @Override
+    public Result followCommons(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        Set<Long> ids = intersectFollowees(userId, loadFollowees(id));
+        if (ids.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        return Result.ok(toUserDTOs(new ArrayList<>(ids)));
+    }
+
+    /**
+     * 分页查询粉丝, 按粉丝的用户id升序
+     *
+     * @param id     用户id
+     * @param lastId 上一页最后一个粉丝的用户id, 第一页传0
+     * @return 粉丝列表
+     */
+    @Override
+    public Result queryFollowers(Long id, Long lastId) {
+        return Result.ok(toUserDTOs(queryFollowerIds(id, lastId, SystemConstants.MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * 分页查询关注的人, 按被关注者的用户id升序
+     *
+     * @param id     用户id
+     * @param lastId 上一页最后一个被关注者的用户id, 第一页传0
+     * @return 关注列表
+     */
+    @Override
+    public Result queryFollowees(Long id, Long lastId) {
+        List<Long> ids = query().select("follow_user_id")
+                .eq("user_id", id).gt("follow_user_id", lastId)
+                .orderByAsc("follow_user_id").last("LIMIT " + SystemConstants.MAX_PAGE_SIZE).list()
+                .stream().map(Follow::getFollowUserId).collect(Collectors.toList());
+        return Result.ok(toUserDTOs(ids));
+    }
+
+    /**
+     * 按用户id分批查询粉丝, 只走(follow_user_id, user_id)索引, 不会一次加载全部粉丝
+     *
+     * @param followUserId 被关注的用户id
+     * @param lastUserId   上一批最后一个粉丝的用户id, 第一批传0
+     * @param count        每批数量
+     * @return 粉丝的用户id, 升序
+     */
+    @Override
+    public List<Long> queryFollowerIds(Long followUserId, Long lastUserId, int count) {
+        return query().select("user_id")
+                .eq("follow_user_id", followUserId).gt("user_id", lastUserId)
+                .orderByAsc("user_id").last("LIMIT " + count).list()
+                .stream().map(Follow::getUserId).collect(Collectors.toList());
+    }
+
+    /**
+     * 求用户关注的人与另一个集合的交集
+     *
+     * @param userId   用户id
+     * @param otherKey 另一个集合的key
+     * @return 交集中的用户id
+     */
+    @Override
+    public Set<Long> intersectFollowees(Long userId, String otherKey) {
+        Set<String> members = stringRedisTemplate.opsForSet().intersect(loadFollowees(userId), otherKey);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Long> ids = new HashSet<>(members.size() * 2);
+        for (String member : members) {
+            if (!FOLLOWS_PLACEHOLDER.equals(member)) {
+                ids.add(Long.valueOf(member));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 确保用户的关注集合已加载到Redis
+     *
+     * @return 关注集合的key
+     */
+    private String loadFollowees(Long userId) {
+        String key = FOLLOWS_KEY + userId;
+        if (BooleanUtil.isTrue(stringRedisTemplate.hasKey(key))) {
+            return key;
+        }
+        List<String> members = query().select("follow_user_id").eq("user_id", userId).list()
+                .stream().map(follow -> follow.getFollowUserId().toString()).collect(Collectors.toList());
+        // 加入占位元素, 没有关注任何人时集合同样存在
+        members.add(FOLLOWS_PLACEHOLDER);
+        stringRedisTemplate.opsForSet().add(key, members.toArray(new String[0]));
+        return key;
+    }
+
+    private List<UserDTO> toUserDTOs(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, UserDTO> users = userService.queryUserDTOByIds(ids);
+        List<UserDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserDTO user = users.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
 }
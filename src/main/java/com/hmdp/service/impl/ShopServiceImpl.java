@@ -1,17 +1,49 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.RawJson;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.IReadWriteLock;
+import com.hmdp.utils.PageCursor;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopSearchIndex;
+import com.hmdp.utils.SimpleRedisReadWriteLock;
+import com.hmdp.utils.SystemConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -20,6 +52,7 @@ import static com.hmdp.utils.RedisConstants.*;
  * 服务实现类
  * </p>
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
@@ -29,6 +62,34 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient; // 注入封装好的工具类
 
+    @Resource
+    private ShopSearchIndex shopSearchIndex;
+
+    @Resource
+    private ShopGeoIndex shopGeoIndex;
+
+    // 导入GEO集合时每批读取的商铺数量
+    private static final int GEO_LOAD_BATCH_SIZE = 1000;
+
+    private final ExecutorService geoLoadExecutor = Executors.newSingleThreadExecutor();
+
+    @PostConstruct
+    private void init() {
+        // 启动时在后台导入GEO集合
+        geoLoadExecutor.execute(() -> {
+            try {
+                loadShopGeo();
+            } catch (Exception e) {
+                log.error("导入商铺GEO集合失败", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    private void destroy() {
+        geoLoadExecutor.shutdownNow();
+    }
+
     @Override
     public Result queryShopById(Long id) {
 
@@ -37,18 +98,59 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         //         CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
         // 方案二：互斥锁解决缓存击穿
-        Shop shop = cacheClient.queryWithMutex(
-                CACHE_SHOP_KEY, id, Shop.class, LOCK_SHOP_KEY, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        // Shop shop = cacheClient.queryWithMutex(
+        //         CACHE_SHOP_KEY, id, Shop.class, LOCK_SHOP_KEY, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
         // 方案三：逻辑过期解决缓存击穿
         // Shop shop = cacheClient.queryWithLogicalExpire(
         //         CACHE_SHOP_KEY, id, Shop.class, LOCK_SHOP_KEY, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
-        if (shop == null) {
+        // 方案四：读写锁 + 版本号, 避免重建时把更新前的旧数据写回缓存
+        // 命中时直接把缓存中的JSON写入响应, 不反序列化为Shop
+        String json = cacheClient.queryRawWithVersion(
+                CACHE_SHOP_KEY, id, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+
+        if (json == null) {
             return Result.fail("店铺不存在！");
         }
 
-        return Result.ok(shop);
+        return Result.ok(new RawJson(json));
+    }
+
+    /**
+     * 查询商铺的ETag, 由ETag戳生成, 不需要读取商铺数据
+     * ETag戳在更新事务提交、缓存删除之后才递增, 提交之前读到的旧数据不会带着新的ETag被客户端缓存,
+     * 提交之后也不会再用旧的ETag返回304
+     *
+     * @param id 商铺id
+     * @return ETag
+     */
+    @Override
+    public String queryShopETag(Long id) {
+        String stamp = stringRedisTemplate.opsForValue().get(CACHE_SHOP_ETAG_KEY + id);
+        return "shop-" + id + "-" + (stamp == null ? "0" : stamp);
+    }
+
+    /**
+     * 新增商铺, 并加入搜索索引与所属类型的GEO集合
+     * 同时递增ETag戳, 新增之前按该id查询到的"店铺不存在"不会再以304返回
+     *
+     * @param shop 商铺数据
+     * @return 商铺id
+     */
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        stringRedisTemplate.opsForValue().increment(CACHE_SHOP_ETAG_KEY + shop.getId());
+        shopSearchIndex.put(shop);
+        shopGeoIndex.put(shop);
+        if (shop.getTypeId() != null && shop.getX() != null && shop.getY() != null) {
+            stringRedisTemplate.opsForGeo().add(
+                    SHOP_GEO_KEY + shop.getTypeId(), new Point(shop.getX(), shop.getY()), shop.getId().toString());
+        }
+        // 返回店铺id
+        return Result.ok(shop.getId());
     }
 
     @Override
@@ -58,10 +160,260 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         if (id == null) {
             return Result.fail("店铺id不能为空");
         }
-        // 1. 更新数据库
+        // 1. 获取写锁, 同时递增版本号, 使进行中的缓存重建失效
+        String key = CACHE_SHOP_KEY + id;
+        IReadWriteLock lock = new SimpleRedisReadWriteLock(key, stringRedisTemplate);
+        if (lock.tryWriteLock(LOCK_SHOP_TTL) == null) {
+            return Result.fail("店铺正在更新, 请稍后重试");
+        }
+        // 读取更新前的商铺, 类型变化时需要从原类型的GEO集合中移除
+        Shop old = getById(id);
+        if (old == null) {
+            lock.unlockWrite();
+            return Result.fail("店铺不存在！");
+        }
+        // 2. 事务结束后删除缓存并释放写锁, 保证新的重建一定读到已提交的数据
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    stringRedisTemplate.delete(key);
+                    // 缓存删除后再递增ETag戳, 之后的请求才会拿到新的ETag
+                    if (status == STATUS_COMMITTED) {
+                        stringRedisTemplate.opsForValue().increment(CACHE_SHOP_ETAG_KEY + id);
+                    }
+                } finally {
+                    lock.unlockWrite();
+                }
+                // 更新可能只包含部分字段, 重新读取后更新搜索索引与GEO集合
+                if (status == STATUS_COMMITTED) {
+                    Shop updated = getById(id);
+                    if (updated != null) {
+                        shopSearchIndex.put(updated);
+                        shopGeoIndex.put(updated);
+                        updateShopGeo(old, updated);
+                    }
+                }
+            }
+        });
+        // 3. 更新数据库
         updateById(shop);
-        // 2. 删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
         return Result.ok();
     }
-}
\ No newline at end of file
+
+    /**
+     * 根据商铺类型查询商铺
+     * 传入cursor时按(type_id, id)索引游标分页, 翻页耗时与页数无关, 翻页期间新增的商铺不会导致重复或遗漏;
+     * 否则兼容按页码分页, 但不再执行COUNT查询; 传入坐标时按距离分页, 忽略cursor
+     *
+     * @param typeId  商铺类型
+     * @param current 页码, 按页码或距离分页时使用
+     * @param cursor  上一页返回的续传令牌, 第一页传空字符串
+     * @param x       经度
+     * @param y       纬度
+     * @return 商铺列表
+     */
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, String cursor, Double x, Double y) {
+        int pageSize = SystemConstants.DEFAULT_PAGE_SIZE;
+        if (x != null && y != null) {
+            return Result.ok(queryNearbyShops(typeId, current, x, y));
+        }
+        if (cursor == null) {
+            List<Shop> records = query().eq("type_id", typeId)
+                    .page(new Page<>(current, pageSize, false)).getRecords();
+            return Result.ok(records);
+        }
+        long lastId = 0;
+        if (!cursor.isEmpty()) {
+            long[] keys = PageCursor.decode(cursor, 1);
+            if (keys == null) {
+                return Result.fail("无效的分页游标！");
+            }
+            lastId = keys[0];
+        }
+        // 多查一条, 判断是否还有下一页
+        List<Shop> shops = query().eq("type_id", typeId).gt("id", lastId)
+                .orderByAsc("id").last("LIMIT " + (pageSize + 1)).list();
+        ScrollResult r = new ScrollResult();
+        if (shops.size() > pageSize) {
+            shops = shops.subList(0, pageSize);
+            r.setNext(PageCursor.encode(shops.get(pageSize - 1).getId()));
+        }
+        r.setList(shops);
+        return Result.ok(r);
+    }
+
+    /**
+     * 根据商铺名称或商圈关键字查询商铺
+     * 由本地倒排索引得到排序后的商铺id, 再通过缓存批量查询商铺; 索引尚未建立时降级为数据库模糊查询
+     *
+     * @param name    关键字
+     * @param current 页码
+     * @return 商铺列表
+     */
+    @Override
+    public Result queryShopByName(String name, Integer current) {
+        int pageSize = SystemConstants.MAX_PAGE_SIZE;
+        if (StrUtil.isNotBlank(name) && shopSearchIndex.isReady()) {
+            List<Long> ids = shopSearchIndex.search(name, (current - 1) * pageSize, pageSize);
+            return Result.ok(queryShopByIds(ids));
+        }
+        List<Shop> records = query()
+                .like(StrUtil.isNotBlank(name), "name", name)
+                .page(new Page<>(current, pageSize, false)).getRecords();
+        return Result.ok(records);
+    }
+
+    /**
+     * 批量查询商铺, 优先读取缓存, 未命中的商铺通过一次数据库查询补齐
+     * 商铺缓存只由带版本号的重建流程写入, 避免与更新并发时写入旧数据, 所以这里不写回缓存
+     *
+     * @param ids 商铺id
+     * @return 按id顺序排列的商铺, 不存在的商铺会被跳过
+     */
+    @Override
+    public List<Shop> queryShopByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 1. 批量读取缓存
+        List<String> keys = ids.stream().map(id -> CACHE_SHOP_KEY + id).collect(Collectors.toList());
+        List<String> jsons = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<Long, Shop> shopMap = new HashMap<>(ids.size() * 2);
+        List<Long> missIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = jsons == null ? null : jsons.get(i);
+            if (json == null) {
+                missIds.add(ids.get(i));
+            } else if (StrUtil.isNotBlank(json)) {
+                shopMap.put(ids.get(i), JSONUtil.toBean(json, Shop.class));
+            }
+        }
+
+        // 2. 未命中的商铺一次查询数据库
+        if (!missIds.isEmpty()) {
+            listByIds(missIds).forEach(shop -> shopMap.put(shop.getId(), shop));
+        }
+
+        // 3. 按传入的顺序返回
+        List<Shop> shops = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Shop shop = shopMap.get(id);
+            if (shop != null) {
+                shops.add(shop);
+            }
+        }
+        return shops;
+    }
+
+    /**
+     * 按距离由近到远分页查询附近的商铺
+     * spring-data-redis 2.3不支持GEOSEARCH, 使用语义相同的GEORADIUS, 查出前current页后跳过之前的页
+     */
+    private List<Shop> queryNearbyShops(Integer typeId, Integer current, Double x, Double y) {
+        // 1. 计算分页参数
+        int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
+        int end = current * SystemConstants.DEFAULT_PAGE_SIZE;
+
+        // 启用了本地网格索引时, 不再访问Redis
+        if (shopGeoIndex.isReady()) {
+            List<ShopGeoIndex.Hit> hits = shopGeoIndex.radius(
+                    typeId.longValue(), x, y, SystemConstants.NEARBY_SHOP_RADIUS, end);
+            if (hits.size() <= from) {
+                return new ArrayList<>();
+            }
+            hits = hits.subList(from, hits.size());
+            List<Shop> shops = queryShopByIds(hits.stream().map(ShopGeoIndex.Hit::getId).collect(Collectors.toList()));
+            Map<Long, Double> distances = hits.stream()
+                    .collect(Collectors.toMap(ShopGeoIndex.Hit::getId, ShopGeoIndex.Hit::getDistance));
+            shops.forEach(shop -> shop.setDistance(distances.get(shop.getId())));
+            return shops;
+        }
+
+        // 2. 查询半径内的商铺, 按距离升序, 带上距离
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = stringRedisTemplate.opsForGeo().radius(
+                SHOP_GEO_KEY + typeId,
+                new Circle(new Point(x, y), new Distance(SystemConstants.NEARBY_SHOP_RADIUS)),
+                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().includeDistance().sortAscending().limit(end));
+        if (results == null || results.getContent().size() <= from) {
+            return new ArrayList<>();
+        }
+
+        // 3. 截取当前页, 记录每个商铺的距离
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> content = results.getContent();
+        List<Long> ids = new ArrayList<>(content.size() - from);
+        Map<Long, Double> distances = new HashMap<>(content.size() * 2);
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : content.subList(from, content.size())) {
+            Long id = Long.valueOf(result.getContent().getName());
+            ids.add(id);
+            distances.put(id, result.getDistance().getValue());
+        }
+
+        // 4. 通过缓存批量查询商铺并填充距离
+        List<Shop> shops = queryShopByIds(ids);
+        shops.forEach(shop -> shop.setDistance(distances.get(shop.getId())));
+        return shops;
+    }
+
+    /**
+     * 商铺类型或坐标变化后, 更新GEO集合; 类型变化或坐标被清空时从原类型的GEO集合中移除
+     */
+    private void updateShopGeo(Shop old, Shop updated) {
+        String member = updated.getId().toString();
+        boolean located = updated.getTypeId() != null && updated.getX() != null && updated.getY() != null;
+        if (old.getTypeId() != null && (!located || !old.getTypeId().equals(updated.getTypeId()))) {
+            stringRedisTemplate.opsForZSet().remove(SHOP_GEO_KEY + old.getTypeId(), member);
+        }
+        if (located) {
+            stringRedisTemplate.opsForGeo().add(
+                    SHOP_GEO_KEY + updated.getTypeId(), new Point(updated.getX(), updated.getY()), member);
+        }
+    }
+
+    /**
+     * 将全部商铺按类型导入GEO集合
+     * 按id分批读取, 每批通过一次管道写入; GEOADD是幂等的, 重复导入不会产生重复数据
+     * 导入完成后记录标记, 之后的启动不再导入; 中途失败时没有标记, 下次启动会重新导入
+     */
+    @Override
+    public void loadShopGeo() {
+        if (BooleanUtil.isTrue(stringRedisTemplate.hasKey(SHOP_GEO_LOADED_KEY))) {
+            return;
+        }
+        // 多个节点同时启动时, 只由一个节点导入
+        Boolean isLock = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_SHOP_GEO_KEY, "1", 10, TimeUnit.MINUTES);
+        if (!BooleanUtil.isTrue(isLock)) {
+            return;
+        }
+        try {
+            long lastId = 0;
+            int total = 0;
+            while (true) {
+                List<Shop> shops = query().select("id", "type_id", "x", "y")
+                        .gt("id", lastId).orderByAsc("id")
+                        .last("LIMIT " + GEO_LOAD_BATCH_SIZE).list();
+                if (shops.isEmpty()) {
+                    break;
+                }
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Shop shop : shops) {
+                        if (shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+                            continue;
+                        }
+                        connection.geoAdd((SHOP_GEO_KEY + shop.getTypeId()).getBytes(StandardCharsets.UTF_8),
+                                new Point(shop.getX(), shop.getY()),
+                                shop.getId().toString().getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                });
+                total += shops.size();
+                lastId = shops.get(shops.size() - 1).getId();
+            }
+            stringRedisTemplate.opsForValue().set(SHOP_GEO_LOADED_KEY, "1");
+            log.info("商铺GEO集合导入完成, 商铺数量: {}", total);
+        } finally {
+            stringRedisTemplate.delete(LOCK_SHOP_GEO_KEY);
+        }
+    }
+}
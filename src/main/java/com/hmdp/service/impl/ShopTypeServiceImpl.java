@@ -1,5 +1,6 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
@@ -13,6 +14,7 @@ import javax.annotation.Resource;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_ETAG_KEY;
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
 
@@ -54,8 +56,37 @@ public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> i
         }
 
         // 5. 若查询到, 将列表写入Redis, 再返回
-        String typeJsonString = JSONUtil.toJsonStr(typeList);
-        stringRedisTemplate.opsForValue().set(cacheTypeKey, typeJsonString, CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
+        cacheTypeList(typeList);
         return Result.ok(typeList);
     }
+
+    /**
+     * 查询商店类型列表的ETag, 只读取与列表同时写入的摘要, 不读取列表本身
+     *
+     * @return 列表内容的摘要, 类型不存在时返回null
+     */
+    @Override
+    public String queryTypeListETag() {
+        // 1. 读取摘要
+        String etag = stringRedisTemplate.opsForValue().get(CACHE_SHOP_TYPE_ETAG_KEY);
+        if (etag != null) {
+            return etag;
+        }
+        // 2. 缓存已过期, 重建列表与摘要
+        List<ShopType> typeList = query().orderByAsc("sort").list();
+        return typeList.isEmpty() ? null : cacheTypeList(typeList);
+    }
+
+    /**
+     * 将列表与其摘要写入Redis
+     *
+     * @return 列表的摘要
+     */
+    private String cacheTypeList(List<ShopType> typeList) {
+        String typeJsonString = JSONUtil.toJsonStr(typeList);
+        String etag = DigestUtil.md5Hex(typeJsonString);
+        stringRedisTemplate.opsForValue().set(CACHE_SHOP_TYPE_KEY, typeJsonString, CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
+        stringRedisTemplate.opsForValue().set(CACHE_SHOP_TYPE_ETAG_KEY, etag, CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
+        return etag;
+    }
 }
@@ -0,0 +1,269 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.SignMonthDTO;
+import com.hmdp.entity.Sign;
+import com.hmdp.mapper.SignMapper;
+import com.hmdp.service.ISignService;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * <p>
+ * 服务实现类
+ * </p>
+ * 每个用户每月的签到记录保存为一个Redis位图, 第n位表示第n+1天是否签到;
+ * 两个月前的位图由后台任务以32位整数归档到数据库, 并从Redis中删除
+ */
+@Slf4j
+@Service
+public class SignServiceImpl extends ServiceImpl<SignMapper, Sign> implements ISignService {
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+    // 一次读取整月的签到记录, 最多31天
+    private static final BitFieldSubCommands MONTH_BITS = BitFieldSubCommands.create()
+            .get(BitFieldSubCommands.BitFieldType.unsigned(32)).valueAt(0);
+    // 每批归档的位图数量
+    private static final int ARCHIVE_BATCH_SIZE = 500;
+    // 统计连续签到时最多向前追溯的月数
+    private static final int MAX_STREAK_MONTHS = 120;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final ScheduledExecutorService archiveExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    private void init() {
+        archiveExecutor.scheduleWithFixedDelay(this::archive, 1L, SIGN_ARCHIVE_INTERVAL * 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        archiveExecutor.shutdownNow();
+    }
+
+    /**
+     * 今日签到
+     *
+     * @return 是否为今天的首次签到
+     */
+    @Override
+    public Result sign() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate today = LocalDate.now();
+        String key = signKey(userId, YearMonth.from(today));
+        Boolean signed = stringRedisTemplate.opsForValue().setBit(key, today.getDayOfMonth() - 1, true);
+        return Result.ok(!BooleanUtil.isTrue(signed));
+    }
+
+    /**
+     * 统计截至今天的连续签到天数, 今天尚未签到时从昨天开始统计, 连续签到可以跨月
+     *
+     * @return 连续签到天数
+     */
+    @Override
+    public Result signCount() {
+        Long userId = UserHolder.getUser().getId();
+        return Result.ok(countStreak(LocalDate.now(), month -> monthBits(userId, month)));
+    }
+
+    /**
+     * 统计截至today的连续签到天数
+     *
+     * @param today     当天
+     * @param monthBits 月份 -> 整月的签到记录, 第d天对应第(32 - d)位
+     * @return 连续签到天数
+     */
+    static int countStreak(LocalDate today, Function<YearMonth, Long> monthBits) {
+        YearMonth month = YearMonth.from(today);
+        long bits = monthBits.apply(month);
+        int day = today.getDayOfMonth();
+        if (!isSigned(bits, day)) {
+            day--;
+        }
+
+        int count = 0;
+        for (int i = 0; i < MAX_STREAK_MONTHS; i++) {
+            if (day == 0) {
+                // 从上个月的最后一天继续统计
+                month = month.minusMonths(1);
+                bits = monthBits.apply(month);
+                day = month.lengthOfMonth();
+            }
+            // 第day天移到最低位, 末尾连续1的个数即为截至第day天的连续签到天数
+            int streak = Long.numberOfTrailingZeros(~(bits >>> (32 - day)));
+            count += streak;
+            if (streak < day) {
+                break;
+            }
+            day = 0;
+        }
+        return count;
+    }
+
+    /**
+     * 查询某月的签到记录
+     *
+     * @param month 月份, 格式为yyyyMM, 为空时查询当月
+     * @return 签到天数及日期
+     */
+    @Override
+    public Result querySignMonth(String month) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = month == null ? YearMonth.now() : YearMonth.parse(month, MONTH_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return Result.fail("月份格式错误！");
+        }
+        long bits = monthBits(UserHolder.getUser().getId(), yearMonth);
+        List<Integer> days = new ArrayList<>();
+        for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+            if (isSigned(bits, day)) {
+                days.add(day);
+            }
+        }
+        SignMonthDTO dto = new SignMonthDTO();
+        dto.setYear(yearMonth.getYear());
+        dto.setMonth(yearMonth.getMonthValue());
+        dto.setCount(Long.bitCount(bits));
+        dto.setDays(days);
+        return Result.ok(dto);
+    }
+
+    /**
+     * 读取整月的签到记录, 第d天对应第(32 - d)位; Redis中没有记录的往月再查询归档
+     */
+    private long monthBits(Long userId, YearMonth month) {
+        List<Long> values = stringRedisTemplate.opsForValue().bitField(signKey(userId, month), MONTH_BITS);
+        long bits = values == null || values.isEmpty() || values.get(0) == null ? 0 : values.get(0);
+        if (bits != 0 || !month.isBefore(YearMonth.now())) {
+            return bits;
+        }
+        Sign sign = query().eq("user_id", userId)
+                .eq("year", month.getYear()).eq("month", month.getMonthValue()).one();
+        return sign == null ? 0 : sign.getBits();
+    }
+
+    static boolean isSigned(long bits, int day) {
+        return day >= 1 && ((bits >>> (32 - day)) & 1) == 1;
+    }
+
+    private static String signKey(Long userId, YearMonth month) {
+        return USER_SIGN_KEY + userId + ":" + month.format(MONTH_FORMATTER);
+    }
+
+    /**
+     * 将两个月前的签到位图归档到数据库
+     * 扫描签到key, 每批通过一次管道读取位图, 一条语句写入数据库后再删除key; 写入失败的key保留到下次重试
+     */
+    private void archive() {
+        Boolean isLock = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_SIGN_ARCHIVE_KEY, "1", 1, TimeUnit.HOURS);
+        if (!BooleanUtil.isTrue(isLock)) {
+            return;
+        }
+        try {
+            // 保留当月与上月的位图, 统计连续签到时不需要查询数据库
+            YearMonth cutoff = YearMonth.now().minusMonths(1);
+            ScanOptions options = ScanOptions.scanOptions().match(USER_SIGN_KEY + "*").count(1000).build();
+            int total = 0;
+            try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(
+                    (RedisCallback<Cursor<byte[]>>) connection -> connection.scan(options))) {
+                List<String> keys = new ArrayList<>(ARCHIVE_BATCH_SIZE);
+                List<Sign> signs = new ArrayList<>(ARCHIVE_BATCH_SIZE);
+                while (cursor.hasNext()) {
+                    String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                    Sign sign = parseKey(key);
+                    if (sign == null || !YearMonth.of(sign.getYear(), sign.getMonth()).isBefore(cutoff)) {
+                        continue;
+                    }
+                    keys.add(key);
+                    signs.add(sign);
+                    if (keys.size() >= ARCHIVE_BATCH_SIZE) {
+                        total += archiveBatch(keys, signs);
+                        keys.clear();
+                        signs.clear();
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    total += archiveBatch(keys, signs);
+                }
+            }
+            if (total > 0) {
+                log.info("签到记录归档完成, 数量: {}", total);
+            }
+        } catch (Exception e) {
+            log.error("签到记录归档失败", e);
+        } finally {
+            stringRedisTemplate.delete(LOCK_SIGN_ARCHIVE_KEY);
+        }
+    }
+
+    private int archiveBatch(List<String> keys, List<Sign> signs) {
+        // 1. 通过一次管道读取位图
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.bitField(key.getBytes(StandardCharsets.UTF_8), MONTH_BITS);
+            }
+            return null;
+        });
+        List<Sign> rows = new ArrayList<>(signs.size());
+        for (int i = 0; i < signs.size(); i++) {
+            List<?> values = (List<?>) results.get(i);
+            Object value = values == null || values.isEmpty() ? null : values.get(0);
+            long bits = value == null ? 0 : ((Number) value).longValue();
+            if (bits != 0) {
+                rows.add(signs.get(i).setBits(bits));
+            }
+        }
+
+        // 2. 写入数据库后删除位图
+        if (!rows.isEmpty()) {
+            getBaseMapper().upsertBatch(rows);
+        }
+        stringRedisTemplate.delete(keys);
+        return rows.size();
+    }
+
+    /**
+     * 解析签到key, 格式为 sign:{userId}:{yyyyMM}
+     */
+    static Sign parseKey(String key) {
+        String[] parts = key.substring(USER_SIGN_KEY.length()).split(":");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            YearMonth month = YearMonth.parse(parts[1], MONTH_FORMATTER);
+            return new Sign().setUserId(Long.valueOf(parts[0]))
+                    .setYear(month.getYear()).setMonth(month.getMonthValue());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+}
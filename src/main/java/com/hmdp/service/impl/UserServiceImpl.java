@@ -1,9 +1,11 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
@@ -11,16 +13,28 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.LoginSessionCache;
 import com.hmdp.utils.RegexUtils;
+import com.hmdp.utils.SignedTokenService;
+import com.hmdp.utils.UserDTOHashCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
@@ -40,6 +54,27 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private SignedTokenService signedTokenService;
+
+    @Resource
+    private LoginSessionCache loginSessionCache;
+
+    // 用户id -> 用户摘要, 列表页反复出现的作者不再访问Redis
+    private final TimedCache<Long, UserDTO> userLocalCache =
+            CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(CACHE_USER_LOCAL_TTL));
+
+    @PostConstruct
+    private void init() {
+        // 定期清理过期的用户摘要, 否则只出现一次的作者会一直占用内存
+        userLocalCache.schedulePrune(TimeUnit.SECONDS.toMillis(CACHE_USER_LOCAL_TTL));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        userLocalCache.cancelPruneSchedule();
+    }
+
     /**
      * 向手机发送短信验证码并保存到Redis
      *
@@ -97,15 +132,17 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
             user = createUserWithPhone(phone);
         }
 
+        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+        // 签名令牌模式: 用户信息签名后直接作为令牌返回, 不写入Redis
+        if (signedTokenService.isEnabled()) {
+            return Result.ok(signedTokenService.create(userDTO));
+        }
+
         // 保存用户信息到Redis
         // 生成Token作为登录令牌
         String token = UUID.randomUUID().toString(true);
         // 将User对象转换为HashMap对象存储
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
-        Map<String, Object> userMap = BeanUtil.beanToMap(userDTO, new HashMap<>(),
-                CopyOptions.create().
-                        setIgnoreNullValue(true).
-                        setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+        Map<String, String> userMap = UserDTOHashCodec.INSTANCE.encode(userDTO);
 
         // 存储HashMap对象到Redis
         String tokenKey = LOGIN_USER_KEY + token;
@@ -115,6 +152,92 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
+    /**
+     * 登出功能
+     *
+     * @param token 登录令牌
+     * @return 无
+     */
+    @Override
+    public Result logout(String token) {
+        if (signedTokenService.isEnabled()) {
+            // 签名令牌无法删除, 将其会话加入黑名单
+            signedTokenService.revoke(token);
+        } else {
+            stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+            loginSessionCache.evict(token);
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 批量查询用户摘要(id、昵称、头像)
+     * 依次查询本地缓存、Redis, 仍未命中的用户通过一次数据库查询补齐并写回缓存
+     *
+     * @param ids 用户id
+     * @return 用户id -> 用户摘要, 不存在的用户不包含在内
+     */
+    @Override
+    public Map<Long, UserDTO> queryUserDTOByIds(Collection<Long> ids) {
+        Map<Long, UserDTO> result = new HashMap<>(ids.size() * 2);
+        // 1. 查询本地缓存
+        List<Long> redisIds = new ArrayList<>();
+        for (Long id : ids) {
+            UserDTO user = userLocalCache.get(id, false);
+            if (user != null) {
+                result.put(id, user);
+            } else if (!result.containsKey(id)) {
+                redisIds.add(id);
+            }
+        }
+        if (redisIds.isEmpty()) {
+            return result;
+        }
+
+        // 2. 批量查询Redis
+        List<String> jsons = stringRedisTemplate.opsForValue().multiGet(
+                redisIds.stream().map(id -> CACHE_USER_KEY + id).collect(Collectors.toList()));
+        List<Long> dbIds = new ArrayList<>();
+        for (int i = 0; i < redisIds.size(); i++) {
+            String json = jsons == null ? null : jsons.get(i);
+            if (json == null) {
+                dbIds.add(redisIds.get(i));
+            } else if (!json.isEmpty()) {
+                // 空字符串表示用户不存在
+                UserDTO user = JSONUtil.toBean(json, UserDTO.class);
+                userLocalCache.put(user.getId(), user);
+                result.put(user.getId(), user);
+            }
+        }
+        if (dbIds.isEmpty()) {
+            return result;
+        }
+
+        // 3. 一次查询数据库, 不存在的用户写入空值, 避免缓存穿透
+        Map<String, String> cacheValues = new LinkedHashMap<>();
+        for (User user : listByIds(dbIds)) {
+            UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+            userLocalCache.put(userDTO.getId(), userDTO);
+            result.put(userDTO.getId(), userDTO);
+            cacheValues.put(CACHE_USER_KEY + userDTO.getId(), JSONUtil.toJsonStr(userDTO));
+        }
+        for (Long id : dbIds) {
+            if (!result.containsKey(id)) {
+                cacheValues.put(CACHE_USER_KEY + id, CACHE_NULL_VALUE);
+            }
+        }
+
+        // 4. 通过管道写回Redis
+        long ttl = TimeUnit.MINUTES.toSeconds(CACHE_USER_TTL);
+        long nullTtl = TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            cacheValues.forEach((key, value) -> connection.setEx(key.getBytes(StandardCharsets.UTF_8),
+                    value.isEmpty() ? nullTtl : ttl, value.getBytes(StandardCharsets.UTF_8)));
+            return null;
+        });
+        return result;
+    }
+
     private User createUserWithPhone(String phone) {
         // 创建用户
         User user = new User();
@@ -42,6 +42,17 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         return Result.ok(vouchers);
     }
 
+    /**
+     * 查询店铺优惠券列表的ETag, 只查询聚合值, 不查询优惠券内容
+     *
+     * @param shopId 店铺id
+     * @return ETag
+     */
+    @Override
+    public String queryVoucherETag(Long shopId) {
+        return "voucher-" + shopId + "-" + getBaseMapper().queryVoucherStampOfShop(shopId);
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
@@ -0,0 +1,244 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 商铺本地索引的加载与同步
+ * 启动时按id分批读取全部商铺建立索引; 本节点新增或修改商铺后由调用方立即调用put,
+ * 其他节点的修改由定时任务按update_time增量同步;
+ * 删除的商铺没有update_time可以比较, 由另一个定时任务分批读取全部商铺id对账, 移除数据库中已不存在的商铺
+ */
+@Slf4j
+public abstract class AbstractShopIndex {
+
+    // 建立索引时每批读取的商铺数量
+    private static final int BUILD_BATCH_SIZE = 1000;
+    // 增量同步的间隔(秒)
+    private static final long SYNC_INTERVAL = 30L;
+    // 增量同步时回看的时间(秒), 覆盖提交较晚、update_time较早的事务
+    private static final long SYNC_LOOK_BACK = 60L;
+    // 对账的间隔(秒)
+    private static final long RECONCILE_INTERVAL = 600L;
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    private volatile boolean ready = false;
+    // 已同步到的最大update_time
+    private volatile LocalDateTime syncedTime;
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    private void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        syncExecutor.execute(this::build);
+        syncExecutor.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.SECONDS);
+        syncExecutor.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL, RECONCILE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        syncExecutor.shutdownNow();
+    }
+
+    /**
+     * 索引是否已建立完成, 未完成时调用方应降级为查询数据库或Redis
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 新增或修改商铺后更新索引
+     *
+     * @param shop 商铺, 需要包含columns()中的字段
+     */
+    public abstract void put(Shop shop);
+
+    /**
+     * 从索引中移除商铺, 商铺不在索引中时忽略
+     *
+     * @param id 商铺id
+     */
+    public abstract void remove(int id);
+
+    /**
+     * @return 索引中全部商铺id的快照
+     */
+    protected abstract int[] indexedIds();
+
+    /**
+     * @return 建立索引需要读取的字段, 不含id与update_time
+     */
+    protected abstract String[] columns();
+
+    /**
+     * @return 索引名称, 用于日志
+     */
+    protected abstract String name();
+
+    protected boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * 按id分批读取全部商铺建立索引
+     */
+    private void build() {
+        try {
+            long begin = System.currentTimeMillis();
+            long lastId = 0;
+            int total = 0;
+            LocalDateTime maxTime = null;
+            while (true) {
+                List<Shop> shops = shopMapper.selectList(newQuery()
+                        .gt("id", lastId).orderByAsc("id")
+                        .last("LIMIT " + BUILD_BATCH_SIZE));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                for (Shop shop : shops) {
+                    put(shop);
+                    maxTime = max(maxTime, shop.getUpdateTime());
+                }
+                total += shops.size();
+                lastId = shops.get(shops.size() - 1).getId();
+            }
+            syncedTime = maxTime;
+            ready = true;
+            log.info("{}建立完成, 商铺数量: {}, 耗时: {}ms", name(), total, System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            log.error("建立{}失败", name(), e);
+        }
+    }
+
+    /**
+     * 增量同步其他节点修改的商铺, 与建立索引一样按id分批读取
+     */
+    void sync() {
+        if (!ready) {
+            // 启动时建立索引失败, 重试
+            build();
+            return;
+        }
+        try {
+            LocalDateTime since = syncedTime;
+            LocalDateTime maxTime = since;
+            long lastId = 0;
+            while (true) {
+                QueryWrapper<Shop> wrapper = newQuery();
+                if (since != null) {
+                    wrapper.ge("update_time", since.minusSeconds(SYNC_LOOK_BACK));
+                }
+                List<Shop> shops = shopMapper.selectList(wrapper
+                        .gt("id", lastId).orderByAsc("id")
+                        .last("LIMIT " + BUILD_BATCH_SIZE));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                for (Shop shop : shops) {
+                    put(shop);
+                    maxTime = max(maxTime, shop.getUpdateTime());
+                }
+                lastId = shops.get(shops.size() - 1).getId();
+            }
+            syncedTime = maxTime;
+        } catch (Exception e) {
+            log.error("同步{}失败", name(), e);
+        }
+    }
+
+    /**
+     * 对账: 移除数据库中已被删除的商铺
+     * 先取索引的快照再读数据库, 快照之后新增的商铺不参与对账;
+     * 快照时尚未提交的新商铺可能被误删, 会在下一次增量同步时重新加入
+     */
+    void reconcile() {
+        if (!ready) {
+            return;
+        }
+        try {
+            int[] indexed = indexedIds();
+            if (indexed.length == 0) {
+                return;
+            }
+            // 1. 按id分批读取数据库中的全部商铺id, 读出的id本身有序
+            int[] existing = new int[Math.max(16, indexed.length)];
+            int size = 0;
+            long lastId = 0;
+            while (true) {
+                List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>().select("id")
+                        .gt("id", lastId).orderByAsc("id")
+                        .last("LIMIT " + BUILD_BATCH_SIZE));
+                if (shops.isEmpty()) {
+                    break;
+                }
+                for (Shop shop : shops) {
+                    if (shop.getId() > 0 && shop.getId() <= Integer.MAX_VALUE) {
+                        if (size == existing.length) {
+                            existing = Arrays.copyOf(existing, size * 2);
+                        }
+                        existing[size++] = shop.getId().intValue();
+                    }
+                }
+                lastId = shops.get(shops.size() - 1).getId();
+            }
+
+            // 2. 移除数据库中不存在的商铺
+            int removed = 0;
+            for (int id : indexed) {
+                if (Arrays.binarySearch(existing, 0, size, id) < 0) {
+                    remove(id);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                log.info("{}对账完成, 移除已删除的商铺: {}", name(), removed);
+            }
+        } catch (Exception e) {
+            log.error("{}对账失败", name(), e);
+        }
+    }
+
+    private QueryWrapper<Shop> newQuery() {
+        String[] columns = columns();
+        String[] select = new String[columns.length + 2];
+        select[0] = "id";
+        select[1] = "update_time";
+        System.arraycopy(columns, 0, select, 2, columns.length);
+        return new QueryWrapper<Shop>().select(select);
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * 索引中以int保存商铺id, 超出范围的商铺不加入索引
+     */
+    protected static Integer toIntId(Long id) {
+        if (id == null || id <= 0 || id > Integer.MAX_VALUE) {
+            log.warn("商铺id超出索引范围, 不加入索引: {}", id);
+            return null;
+        }
+        return id.intValue();
+    }
+}
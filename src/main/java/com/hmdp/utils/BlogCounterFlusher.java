@@ -0,0 +1,95 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+
+/**
+ * 博文计数增量的同步
+ * 点赞数、评论数等计数的变化先累加到Redis的Hash中(field为博文id), 由各自的后台任务定期调用,
+ * 原子地取出全部增量, 按增量分组后批量更新数据库中对应的列
+ */
+@Slf4j
+@Component
+public class BlogCounterFlusher {
+
+    // 每条UPDATE语句最多更新的博文数量
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final DefaultRedisScript<List> DRAIN_SCRIPT;
+    static {
+        DRAIN_SCRIPT = new DefaultRedisScript<>();
+        DRAIN_SCRIPT.setLocation(new ClassPathResource("scripts/hash_drain.lua"));
+        DRAIN_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    /**
+     * 把增量同步到数据库, 失败的增量写回Redis, 等待下次同步
+     *
+     * @param deltaKey 保存增量的Hash
+     * @param column   tb_blog中对应的计数列
+     */
+    public void flush(String deltaKey, String column) {
+        List<?> entries;
+        try {
+            // 1. 取出并清空增量
+            entries = stringRedisTemplate.execute(DRAIN_SCRIPT, Collections.singletonList(deltaKey));
+        } catch (Exception e) {
+            log.error("读取计数增量失败, key: {}", deltaKey, e);
+            return;
+        }
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+
+        // 2. 按增量分组, 增量相同的博文用一条语句更新
+        Map<Long, List<Long>> idsByDelta = new HashMap<>();
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            long delta = Long.parseLong(entries.get(i + 1).toString());
+            if (delta != 0) {
+                idsByDelta.computeIfAbsent(delta, k -> new ArrayList<>()).add(Long.valueOf(entries.get(i).toString()));
+            }
+        }
+
+        // 3. 分批更新数据库
+        idsByDelta.forEach((delta, ids) -> {
+            for (int from = 0; from < ids.size(); from += FLUSH_BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + FLUSH_BATCH_SIZE, ids.size()));
+                try {
+                    // 计数列可能是无符号列且允许为空, 先转为有符号数再计算, 避免减为负数时报错
+                    blogMapper.update(null, new UpdateWrapper<Blog>()
+                            .setSql(column + " = GREATEST(CAST(IFNULL(" + column + ", 0) AS SIGNED) + (" + delta + "), 0)")
+                            .in("id", batch));
+                    // 删除博文缓存, 下次读取时加载新的计数
+                    stringRedisTemplate.delete(batch.stream().map(id -> CACHE_BLOG_KEY + id).collect(Collectors.toList()));
+                } catch (Exception e) {
+                    log.error("同步{}增量失败, 将在下次同步时重试", column, e);
+                    for (Long id : batch) {
+                        stringRedisTemplate.opsForHash().increment(deltaKey, id.toString(), delta);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -4,6 +4,8 @@ import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
@@ -21,11 +23,14 @@ import static com.hmdp.utils.RedisConstants.*;
 public class CacheClient {
 
     private final StringRedisTemplate stringRedisTemplate;
+    // 与Spring MVC序列化响应使用同一个ObjectMapper, 缓存中的JSON可以原样输出到响应中
+    private final ObjectMapper objectMapper;
 
     private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    public CacheClient(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -204,6 +209,101 @@ public class CacheClient {
         return null; // 重试次数耗尽
     }
 
+    /**
+     * 解决更新与缓存重建并发导致的脏数据：读写锁 + 版本号
+     * 命中缓存时不访问锁, 与普通查询的往返次数相同;
+     * 未命中时只读取版本号, 不持有读锁, 重建完成后仅当版本号未变化且写锁空闲才写回缓存
+     *
+     * @param keyPrefix  Redis Key 前缀, 同时作为读写锁的名称前缀
+     * @param id         查询的ID
+     * @param type       返回值的Class类型
+     * @param dbFallback 数据库查询回调函数
+     * @param time       缓存过期时间
+     * @param unit       时间单位
+     * @return 泛型对象
+     */
+    public <R, ID> R queryWithVersion(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 1. 从Redis查询缓存
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (StrUtil.isNotBlank(json)) {
+            return JSONUtil.toBean(json, type);
+        }
+        if (json != null) {
+            return null;
+        }
+        // 2. 未命中, 按版本号重建
+        return rebuildWithVersion(key, id, dbFallback, time, unit).value;
+    }
+
+    /**
+     * 与queryWithVersion相同, 但返回缓存中的JSON字符串
+     * 命中时不反序列化, 由调用方用RawJson直接写入响应; 只有未命中时才查询并序列化一次实体
+     *
+     * @return 实体的JSON, 不存在时返回null
+     */
+    public <R, ID> String queryRawWithVersion(
+            String keyPrefix, ID id, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 1. 从Redis查询缓存, 命中时原样返回
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (StrUtil.isNotBlank(json)) {
+            return json;
+        }
+        if (json != null) {
+            return null;
+        }
+        // 2. 未命中, 按版本号重建, 返回写入缓存的JSON
+        return rebuildWithVersion(key, id, dbFallback, time, unit).json;
+    }
+
+    /**
+     * 缓存未命中时按版本号重建
+     */
+    private <R, ID> Rebuilt<R> rebuildWithVersion(
+            String key, ID id, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 1. 读取版本号, 不持有锁
+        IReadWriteLock lock = new SimpleRedisReadWriteLock(key, stringRedisTemplate);
+        Long version = lock.tryReadVersion();
+        if (version == null) {
+            // 1.1 正在更新, 直接查询数据库, 不写回缓存
+            R r = dbFallback.apply(id);
+            return new Rebuilt<>(r, r == null ? null : toJson(r));
+        }
+
+        // 2. 查询数据库
+        R r = dbFallback.apply(id);
+        String json = r == null ? null : toJson(r);
+
+        // 3. 按版本号写回缓存, 重建期间发生过更新则丢弃本次结果
+        boolean written = json == null
+                ? lock.setIfVersion(key, CACHE_NULL_VALUE, version, CACHE_NULL_TTL, TimeUnit.MINUTES)
+                : lock.setIfVersion(key, json, version, time, unit);
+        if (!written) {
+            log.debug("缓存重建期间数据已更新, 丢弃过期的重建结果: {}", key);
+        }
+        return new Rebuilt<>(r, json);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化缓存数据失败", e);
+        }
+    }
+
+    private static class Rebuilt<R> {
+        private final R value;
+        private final String json;
+
+        private Rebuilt(R value, String json) {
+            this.value = value;
+            this.json = json;
+        }
+    }
+
     private boolean tryLock(String key) {
         Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", LOCK_SHOP_TTL, TimeUnit.SECONDS);
         return BooleanUtil.isTrue(flag);
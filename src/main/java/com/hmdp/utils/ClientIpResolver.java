@@ -0,0 +1,85 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.Validator;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 获取客户端IP
+ * X-Forwarded-For可以由客户端任意伪造, 只有直接连接的一方是受信任的代理时才读取,
+ * 并从右向左跳过受信任的代理, 取第一个不受信任的地址
+ */
+@Component
+public class ClientIpResolver {
+
+    // 受信任代理的精确地址
+    private final Set<String> trustedAddresses = new HashSet<>();
+    // 受信任代理的IPv4网段: {网络地址, 掩码}
+    private final List<long[]> trustedRanges = new ArrayList<>();
+
+    public ClientIpResolver(@Value("${hmdp.trusted-proxies:127.0.0.1,::1,0:0:0:0:0:0:0:1}") String[] trustedProxies) {
+        for (String proxy : trustedProxies) {
+            proxy = proxy.trim();
+            if (proxy.isEmpty()) {
+                continue;
+            }
+            int slash = proxy.indexOf('/');
+            if (slash < 0) {
+                trustedAddresses.add(proxy);
+                continue;
+            }
+            String address = proxy.substring(0, slash);
+            int bits = Integer.parseInt(proxy.substring(slash + 1));
+            if (!Validator.isIpv4(address) || bits < 0 || bits > 32) {
+                throw new IllegalArgumentException("不支持的代理网段: " + proxy);
+            }
+            long mask = bits == 0 ? 0 : (0xFFFFFFFFL << (32 - bits)) & 0xFFFFFFFFL;
+            trustedRanges.add(new long[]{NetUtil.ipv4ToLong(address) & mask, mask});
+        }
+    }
+
+    /**
+     * @param request 请求
+     * @return 客户端IP
+     */
+    public String getClientIp(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (!isTrusted(remote) || StrUtil.isBlank(forwarded)) {
+            return remote;
+        }
+        // 每一级代理把它看到的来源追加到末尾, 从右向左找到第一个不是受信任代理的地址
+        List<String> hops = StrUtil.split(forwarded, ',', true, true);
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!isTrusted(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        // 全部是受信任的代理, 取最左侧的地址
+        return hops.isEmpty() ? remote : hops.get(0);
+    }
+
+    boolean isTrusted(String ip) {
+        if (trustedAddresses.contains(ip)) {
+            return true;
+        }
+        if (trustedRanges.isEmpty() || !Validator.isIpv4(ip)) {
+            return false;
+        }
+        long value = NetUtil.ipv4ToLong(ip);
+        for (long[] range : trustedRanges) {
+            if ((value & range[1]) == range[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,174 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.hmdp.service.IFollowService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 博文推送
+ * 每篇博文都写入作者的发件箱; 粉丝数不超过阈值的作者, 由后台线程池分批推送到粉丝的收件箱(推模式),
+ * 超过阈值的作者不再推送, 由读者查询时合并其发件箱(拉模式);
+ * 从拉模式切换回推模式时, 先把拉模式期间发布的博文补推到粉丝的收件箱, 完成后读者才不再合并其发件箱
+ */
+@Slf4j
+@Component
+public class FeedPusher {
+
+    private static final int PUSH_WORKERS = 4;
+    private static final int PUSH_QUEUE_CAPACITY = 1000;
+    // 每批处理的粉丝数量
+    private static final int PUSH_BATCH_SIZE = 500;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final IFollowService followService;
+
+    @Value("${hmdp.feed.inbox-size:1000}")
+    private long inboxSize;
+
+    @Value("${hmdp.feed.pull-threshold:5000}")
+    private int pullThreshold;
+
+    // 队列满时由发布博文的线程自己执行推送, 对发布形成反压, 而不是丢弃任务
+    private final ThreadPoolExecutor pushExecutor = new ThreadPoolExecutor(
+            PUSH_WORKERS, PUSH_WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(PUSH_QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private final Timer lagTimer;
+    private final Counter deliveredCounter;
+
+    public FeedPusher(StringRedisTemplate stringRedisTemplate, IFollowService followService, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.followService = followService;
+        Gauge.builder("feed.push.backlog", pushExecutor, e -> e.getQueue().size())
+                .description("等待推送的博文数量")
+                .register(meterRegistry);
+        Gauge.builder("feed.push.active", pushExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在推送的博文数量")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("feed.push.lag")
+                .description("博文发布到推送完成的延迟")
+                .register(meterRegistry);
+        this.deliveredCounter = Counter.builder("feed.push.delivered")
+                .description("写入收件箱的次数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    private void destroy() throws InterruptedException {
+        pushExecutor.shutdown();
+        pushExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 发布博文
+     *
+     * @param authorId  作者id
+     * @param blogId    博文id
+     * @param timestamp 发布时间, 作为收件箱和发件箱中的分数
+     */
+    public void publish(Long authorId, Long blogId, long timestamp) {
+        // 1. 写入作者的发件箱
+        String outboxKey = FEED_OUTBOX_KEY + authorId;
+        stringRedisTemplate.opsForZSet().add(outboxKey, blogId.toString(), timestamp);
+        stringRedisTemplate.opsForZSet().removeRange(outboxKey, 0, -inboxSize - 1);
+
+        // 2. 粉丝数超过阈值, 切换为拉模式, 并记录切换时间
+        String author = authorId.toString();
+        int followers = followService.query().eq("follow_user_id", authorId).count();
+        if (followers > pullThreshold) {
+            stringRedisTemplate.opsForSet().add(FEED_PULL_AUTHORS_KEY, author);
+            stringRedisTemplate.opsForHash().putIfAbsent(FEED_PULL_SINCE_KEY, author, String.valueOf(timestamp));
+            return;
+        }
+        boolean pullMode = BooleanUtil.isTrue(stringRedisTemplate.opsForSet().isMember(FEED_PULL_AUTHORS_KEY, author));
+
+        // 3. 异步推送到粉丝的收件箱
+        pushExecutor.execute(() -> {
+            try {
+                if (pullMode) {
+                    backfill(authorId);
+                } else {
+                    pushToFollowers(authorId, Collections.singleton(new DefaultTypedTuple<>(blogId.toString(), (double) timestamp)));
+                }
+            } catch (Exception e) {
+                log.error("推送博文失败, blogId: {}", blogId, e);
+            } finally {
+                lagTimer.record(System.currentTimeMillis() - timestamp, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * 从拉模式切换回推模式: 把切换为拉模式之后发件箱中的博文(包括本次发布的)补推到粉丝的收件箱,
+     * 完成后再移出拉模式作者集合; 在此之前读者仍会合并发件箱, 博文不会从关注列表中消失
+     */
+    private void backfill(Long authorId) {
+        String author = authorId.toString();
+        Object since = stringRedisTemplate.opsForHash().get(FEED_PULL_SINCE_KEY, author);
+        // 没有记录切换时间时补推整个发件箱, 发件箱本身最多保留inboxSize条
+        double min = since == null ? 0 : Double.parseDouble(since.toString());
+        Set<ZSetOperations.TypedTuple<String>> entries = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(FEED_OUTBOX_KEY + authorId, min, Double.POSITIVE_INFINITY);
+        if (entries != null && !entries.isEmpty()) {
+            pushToFollowers(authorId, entries);
+        }
+        stringRedisTemplate.opsForSet().remove(FEED_PULL_AUTHORS_KEY, author);
+        stringRedisTemplate.opsForHash().delete(FEED_PULL_SINCE_KEY, author);
+        log.info("作者切换回推模式, 已补推{}篇博文, authorId: {}", entries == null ? 0 : entries.size(), authorId);
+    }
+
+    /**
+     * 分批读取粉丝, 每批通过一次管道写入收件箱, 并把收件箱裁剪到上限以内
+     *
+     * @param entries 博文id及其发布时间
+     */
+    private void pushToFollowers(Long authorId, Collection<ZSetOperations.TypedTuple<String>> entries) {
+        Set<RedisZSetCommands.Tuple> tuples = new HashSet<>(entries.size() * 2);
+        for (ZSetOperations.TypedTuple<String> entry : entries) {
+            tuples.add(new DefaultTuple(entry.getValue().getBytes(StandardCharsets.UTF_8), entry.getScore()));
+        }
+        long lastUserId = 0;
+        while (true) {
+            List<Long> followerIds = followService.queryFollowerIds(authorId, lastUserId, PUSH_BATCH_SIZE);
+            if (followerIds.isEmpty()) {
+                return;
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long followerId : followerIds) {
+                    byte[] key = (FEED_KEY + followerId).getBytes(StandardCharsets.UTF_8);
+                    connection.zAdd(key, tuples);
+                    // 只保留最新的inboxSize条
+                    connection.zRemRange(key, 0, -inboxSize - 1);
+                }
+                return null;
+            });
+            deliveredCounter.increment((double) followerIds.size() * tuples.size());
+            lastUserId = followerIds.get(followerIds.size() - 1);
+        }
+    }
+}
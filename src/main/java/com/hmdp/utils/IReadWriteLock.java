@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带版本号的读写锁
+ * 写锁由数据更新者独占, 获取时递增版本号; 缓存重建者不持有锁, 只在开始时读取版本号, 写回缓存前再比较,
+ * 期间发生过更新则放弃写回. 正确性完全由版本号保证, 写者不需要等待进行中的重建
+ */
+public interface IReadWriteLock {
+    /**
+     * 读取当前版本号, 作为缓存重建的版本戳; 不持有锁, 也不需要释放
+     *
+     * @return 写锁空闲时返回当前版本号; 写锁被占用时返回null
+     */
+    public Long tryReadVersion();
+
+    /**
+     * 尝试获取写锁, 获取成功的同时递增版本号
+     *
+     * @param timeoutSec 锁的超时时间
+     * @return 获取成功时返回递增后的版本号; 失败返回null
+     */
+    public Long tryWriteLock(long timeoutSec);
+
+    public void unlockWrite();
+
+    /**
+     * 仅当版本号未变化且写锁空闲时写入缓存
+     *
+     * @param key     缓存的key
+     * @param value   缓存的值
+     * @param version 重建开始时读取的版本号
+     * @param time    缓存过期时间
+     * @param unit    时间单位
+     * @return 是否写入成功
+     */
+    public boolean setIfVersion(String key, String value, long version, long time, TimeUnit unit);
+}
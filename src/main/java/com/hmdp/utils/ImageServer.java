@@ -0,0 +1,236 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 上传图片的静态文件服务, 替代原先指向上传目录的nginx
+ * 1. 内容寻址的文件名本身就是内容摘要, 直接作为强ETag, 并设置一年的不可变缓存
+ * 2. 支持If-None-Match与单段Range请求
+ * 3. 缩略图体积小、访问最频繁, 以内存映射的方式缓存最近访问的一部分;
+ *    其余文件优先交给Tomcat的sendfile从内核直接发送, 不经过用户态缓冲区
+ */
+@Slf4j
+@Component
+public class ImageServer {
+
+    // 内存映射缓存的文件数量上限
+    private static final int MAPPED_CACHE_SIZE = 256;
+    // 超过该大小的缩略图不缓存
+    private static final long MAPPED_MAX_BYTES = 512 * 1024;
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_DEFAULT = "public, max-age=86400";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    @Resource
+    private ImageStore imageStore;
+
+    private final LRUCache<String, MappedByteBuffer> mappedCache = CacheUtil.newLRUCache(MAPPED_CACHE_SIZE);
+
+    /**
+     * 输出图片
+     *
+     * @param name 相对于上传根目录的文件名, 如 /blogs/aa/bb/{摘要}_w320.jpg
+     */
+    public void serve(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 1. 校验文件名, 不允许访问根目录以外或临时目录中的文件
+        Path path;
+        try {
+            path = imageStore.resolve(name);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (name.contains("/.")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            mappedCache.remove(name);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attrs.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 2. 缓存相关的响应头
+        boolean immutable = ImageStore.isContentName(name) || ImageStore.isVariantName(name);
+        String etag = immutable
+                ? "\"" + StrUtil.subBefore(path.getFileName().toString(), ".", true) + "\""
+                : "\"" + Long.toHexString(attrs.size()) + "-" + Long.toHexString(attrs.lastModifiedTime().toMillis()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? CACHE_IMMUTABLE : CACHE_DEFAULT);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        // 只以图片类型输出, 并禁止浏览器猜测类型; 其他文件(如旧版本上传的html、svg)一律作为附件下载, 不会在本站执行脚本
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        MediaType mediaType = MediaTypeFactory.getMediaType(name).orElse(null);
+        if (isSafeImage(mediaType)) {
+            response.setContentType(mediaType.toString());
+        } else {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+        }
+
+        // 3. 解析Range, If-Range与ETag不一致时忽略Range, 返回完整内容
+        long length = attrs.size();
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        // 4. 输出内容
+        MappedByteBuffer mapped = ImageStore.isVariantName(name) && length <= MAPPED_MAX_BYTES
+                ? mapped(name, path) : null;
+        if (mapped != null) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) start).limit((int) (end + 1));
+            write(slice, response);
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由Tomcat在请求处理结束后通过sendfile发送
+            request.setAttribute(SENDFILE_FILENAME, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position <= end) {
+                    long written = channel.transferTo(position, end + 1 - position, out);
+                    if (written <= 0) {
+                        break;
+                    }
+                    position += written;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取缩略图的内存映射, 文件以摘要命名、内容不会改变, 映射后可以一直复用
+     */
+    private MappedByteBuffer mapped(String name, Path path) throws IOException {
+        MappedByteBuffer buffer = mappedCache.get(name);
+        if (buffer != null) {
+            return buffer;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mappedCache.put(name, buffer);
+        return buffer;
+    }
+
+    private static void write(ByteBuffer buffer, HttpServletResponse response) throws IOException {
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * 是否为可以直接在浏览器中展示的图片类型, svg可以包含脚本, 不属于此类
+     */
+    static boolean isSafeImage(MediaType mediaType) {
+        return mediaType != null && "image".equals(mediaType.getType()) && !mediaType.getSubtype().contains("svg");
+    }
+
+    /**
+     * If-None-Match中可能包含多个ETag, 或者为*
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : StrUtil.split(ifNoneMatch, ',', true, true)) {
+            if ("*".equals(candidate) || etag.equals(StrUtil.removePrefix(candidate, "W/"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析单段Range
+     *
+     * @return 满足时返回[start, end]; 无法满足时返回null; 格式不支持(如多段)时返回空数组, 按完整内容处理
+     */
+    static long[] parseRange(String range, long length) {
+        Matcher matcher = RANGE.matcher(range.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (matcher.group(1).isEmpty()) {
+                // bytes=-n: 最后n个字节
+                long suffix = Long.parseLong(matcher.group(2));
+                if (suffix == 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(matcher.group(1));
+                end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+            }
+            return start >= length || start > end ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.hmdp.utils.RedisConstants.IMAGE_OWNER_KEY;
+import static com.hmdp.utils.RedisConstants.IMAGE_REFS_KEY;
+import static com.hmdp.utils.RedisConstants.IMAGE_VARIANTS_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_IMAGE_KEY;
+
+/**
+ * 按内容寻址的图片存储
+ * 上传的数据经NIO通道写入临时文件的同时计算SHA-256, 再以摘要作为文件名移动到分片目录中,
+ * 相同的图片只保存一份; Redis中记录每个文件的引用次数, 以及每个用户持有的引用次数,
+ * 用户只能释放自己持有的引用, 引用归零时才删除文件
+ */
+@Slf4j
+@Component
+public class ImageStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 内容寻址的文件名: /blogs/{摘要前2位}/{摘要3-4位}/{摘要}.{后缀}
+    private static final Pattern CONTENT_NAME =
+            Pattern.compile("^/blogs/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z0-9]{1,8}$");
+    // 缩略图的文件名: /blogs/{摘要前2位}/{摘要3-4位}/{摘要}_w{宽度}.{后缀}
+    private static final Pattern VARIANT_NAME =
+            Pattern.compile("^/blogs/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}_w\\d{1,4}\\.[a-z0-9]{1,8}$");
+    // 允许上传的图片格式, 不允许html、svg等浏览器会当作页面执行脚本的格式
+    private static final Set<String> SUFFIXES = new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "webp"));
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final Path root;
+    private final Path tmpDir;
+
+    public ImageStore(@Value("${hmdp.upload.root:/var/hmdp/imgs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve(".tmp");
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 保存图片, 内容相同的图片返回同一个文件名并增加引用次数
+     *
+     * @param in               图片内容
+     * @param originalFilename 原始文件名, 用于取后缀
+     * @param userId           上传的用户
+     * @return 相对于上传根目录的文件名, 不是允许的图片格式时返回null
+     */
+    public String save(InputStream in, String originalFilename, Long userId) throws IOException {
+        String suffix = StrUtil.nullToEmpty(StrUtil.subAfter(originalFilename, ".", true)).toLowerCase();
+        if (!isAllowedSuffix(suffix)) {
+            return null;
+        }
+        // 1. 边写临时文件边计算摘要, 数据只读一遍
+        Path tmp = createTempFile();
+        String digest;
+        try {
+            digest = copyAndHash(in, tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        String name = StrUtil.format("/blogs/{}/{}/{}.{}",
+                digest.substring(0, 2), digest.substring(2, 4), digest, suffix);
+        Path target = resolve(name);
+
+        // 2. 引用计数与文件的存在性必须一起变化, 与删除操作互斥
+        RLock lock = getLock(digest);
+        lock.lock();
+        try {
+            // 2.1. 已存在相同内容的文件时不再移动, 临时文件在finally中删除
+            if (!Files.exists(target)) {
+                // 2.2. 临时目录与目标在同一文件系统下, 原子重命名, 不会读到写了一半的文件
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            stringRedisTemplate.opsForHash().increment(IMAGE_REFS_KEY, name, 1);
+            stringRedisTemplate.opsForHash().increment(IMAGE_OWNER_KEY + userId, name, 1);
+        } finally {
+            lock.unlock();
+            Files.deleteIfExists(tmp);
+        }
+        return name;
+    }
+
+    /**
+     * 释放用户持有的一次引用, 引用次数归零时删除文件
+     * 旧版本以UUID命名的文件没有记录上传者, 无法确认归属, 不允许通过此方法删除
+     *
+     * @param name   保存时返回的文件名
+     * @param userId 释放引用的用户
+     * @return 文件名不合法或用户没有持有该图片的引用时返回false
+     */
+    public boolean release(String name, Long userId) throws IOException {
+        if (!isContentName(name)) {
+            return false;
+        }
+        String ownerKey = IMAGE_OWNER_KEY + userId;
+        RLock lock = getLock(digestOf(name));
+        lock.lock();
+        try {
+            // 1. 只释放该用户自己持有的引用
+            Long owned = stringRedisTemplate.opsForHash().increment(ownerKey, name, -1);
+            if (owned == null || owned < 0) {
+                stringRedisTemplate.opsForHash().increment(ownerKey, name, 1);
+                return false;
+            }
+            if (owned == 0) {
+                stringRedisTemplate.opsForHash().delete(ownerKey, name);
+            }
+            // 2. 释放文件的引用, 归零时删除
+            Long refs = stringRedisTemplate.opsForHash().increment(IMAGE_REFS_KEY, name, -1);
+            if (refs == null || refs <= 0) {
+                stringRedisTemplate.opsForHash().delete(IMAGE_REFS_KEY, name);
+                stringRedisTemplate.opsForHash().delete(IMAGE_VARIANTS_KEY, name);
+                Files.deleteIfExists(resolve(name));
+                // 同时删除该图片的缩略图
+                for (int width : SystemConstants.IMAGE_VARIANT_WIDTHS) {
+                    Files.deleteIfExists(resolve(variantName(name, width)));
+                }
+                log.debug("图片引用归零, 已删除: {}", name);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 是否为允许上传的图片格式
+     *
+     * @param suffix 小写的文件后缀
+     */
+    public static boolean isAllowedSuffix(String suffix) {
+        return SUFFIXES.contains(suffix);
+    }
+
+    /**
+     * 是否为按内容寻址保存的文件名
+     */
+    public static boolean isContentName(String name) {
+        return name != null && CONTENT_NAME.matcher(name).matches();
+    }
+
+    /**
+     * 是否为缩略图的文件名
+     */
+    public static boolean isVariantName(String name) {
+        return name != null && VARIANT_NAME.matcher(name).matches();
+    }
+
+    /**
+     * 文件名中的内容摘要, 同一摘要的文件共用一把锁
+     */
+    public static String digestOf(String name) {
+        return name.substring(name.lastIndexOf('/') + 1, name.lastIndexOf('.'));
+    }
+
+    /**
+     * 指定宽度的缩略图文件名, 与原图位于同一目录: /blogs/aa/bb/{摘要}_w320.jpg
+     */
+    public static String variantName(String name, int width) {
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + "_w" + width + name.substring(dot);
+    }
+
+    /**
+     * 获取内容摘要对应的锁, 修改文件与引用计数前需要先加锁
+     */
+    public RLock getLock(String digest) {
+        return redissonClient.getLock(LOCK_IMAGE_KEY + digest);
+    }
+
+    /**
+     * 在上传根目录下创建临时文件, 写完后可以原子地重命名到目标位置
+     */
+    public Path createTempFile() throws IOException {
+        Files.createDirectories(tmpDir);
+        return Files.createTempFile(tmpDir, "upload-", ".part");
+    }
+
+    /**
+     * 把文件名解析为上传根目录下的路径, 不允许跳出根目录
+     */
+    public Path resolve(String name) {
+        Path path = root.resolve(StrUtil.removePrefix(name, "/")).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("错误的文件名称: " + name);
+        }
+        return path;
+    }
+
+    private static String copyAndHash(InputStream in, Path tmp) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                // 摘要只读取缓冲区的一个视图, 不移动写入用的position
+                md.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return HexUtil.encodeHexStr(md.digest());
+    }
+}
@@ -0,0 +1,159 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 登录会话的本地缓存
+ * 短时间内重复访问的token不再查询Redis, 续期操作延迟到剩余有效期低于阈值时批量执行
+ */
+@Slf4j
+@Component
+public class LoginSessionCache {
+
+    private static final int REFRESH_BATCH_SIZE = 500;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // token -> 会话, 未登录的token也会缓存, 避免伪造的token反复穿透到Redis
+    private final TimedCache<String, LoginSession> localCache =
+            CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(LOGIN_USER_LOCAL_TTL));
+
+    // 等待续期的token, 同一个token多次加入只会续期一次
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public LoginSessionCache(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @PostConstruct
+    private void init() {
+        localCache.schedulePrune(TimeUnit.SECONDS.toMillis(LOGIN_USER_LOCAL_TTL));
+        refreshExecutor.scheduleWithFixedDelay(this::flushRefresh, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        refreshExecutor.shutdown();
+        localCache.cancelPruneSchedule();
+    }
+
+    /**
+     * 根据token获取登录用户
+     *
+     * @param token 登录令牌
+     * @return 登录用户, 未登录时返回null
+     */
+    public UserDTO get(String token) {
+        // 1. 查询本地缓存, 不刷新最后访问时间, 保证缓存按写入时间过期
+        LoginSession session = localCache.get(token, false);
+        if (session == null) {
+            // 2. 未命中, 查询Redis并放入本地缓存
+            session = load(token);
+            localCache.put(token, session);
+        }
+
+        // 3. 剩余有效期低于阈值时, 加入续期队列
+        if (session.user != null
+                && session.expireAt - System.currentTimeMillis() < TimeUnit.SECONDS.toMillis(LOGIN_USER_REFRESH_THRESHOLD)) {
+            pendingRefresh.add(token);
+        }
+        return session.user;
+    }
+
+    /**
+     * 移除本地缓存的会话
+     */
+    public void evict(String token) {
+        localCache.remove(token);
+        pendingRefresh.remove(token);
+    }
+
+    /**
+     * 通过管道在一次往返中查询会话信息及其剩余有效期
+     */
+    private LoginSession load(String token) {
+        byte[] tokenKey = (LOGIN_USER_KEY + token).getBytes(StandardCharsets.UTF_8);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hGetAll(tokenKey);
+            connection.pTtl(tokenKey);
+            return null;
+        });
+
+        Map<?, ?> userMap = (Map<?, ?>) results.get(0);
+        if (userMap == null || userMap.isEmpty()) {
+            return new LoginSession(null, 0L);
+        }
+        Long ttl = (Long) results.get(1);
+        UserDTO userDTO = UserDTOHashCodec.INSTANCE.decode(userMap);
+        return new LoginSession(userDTO, System.currentTimeMillis() + (ttl == null ? 0L : ttl));
+    }
+
+    /**
+     * 批量续期, 每批通过一次管道发送
+     */
+    private void flushRefresh() {
+        if (pendingRefresh.isEmpty()) {
+            return;
+        }
+        List<String> tokens = new ArrayList<>(pendingRefresh);
+        pendingRefresh.removeAll(tokens);
+        try {
+            for (int from = 0; from < tokens.size(); from += REFRESH_BATCH_SIZE) {
+                List<String> batch = tokens.subList(from, Math.min(from + REFRESH_BATCH_SIZE, tokens.size()));
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String token : batch) {
+                        expire(connection, token);
+                    }
+                    return null;
+                });
+                // 更新本地记录的过期时间, 避免同一个token被重复续期
+                long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL);
+                for (String token : batch) {
+                    LoginSession session = localCache.get(token, false);
+                    if (session != null) {
+                        session.expireAt = expireAt;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("登录会话续期失败", e);
+        }
+    }
+
+    private void expire(RedisConnection connection, String token) {
+        connection.expire((LOGIN_USER_KEY + token).getBytes(StandardCharsets.UTF_8), LOGIN_USER_TTL);
+    }
+
+    private static class LoginSession {
+        private final UserDTO user;
+        private volatile long expireAt;
+
+        private LoginSession(UserDTO user, long expireAt) {
+            this.user = user;
+            this.expireAt = expireAt;
+        }
+    }
+}
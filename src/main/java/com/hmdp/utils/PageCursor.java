@@ -0,0 +1,61 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * 游标分页的续传令牌
+ * 令牌是上一页最后一条记录的排序键, 以定长long编码后再做base64url, 对客户端不透明, 只能原样传回
+ */
+public class PageCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageCursor() {
+    }
+
+    /**
+     * 编码排序键
+     *
+     * @param keys 上一页最后一条记录的排序键, 按排序字段的顺序排列
+     * @return 续传令牌
+     */
+    public static String encode(long... keys) {
+        ByteBuffer buffer = ByteBuffer.allocate(keys.length * Long.BYTES);
+        for (long key : keys) {
+            buffer.putLong(key);
+        }
+        return ENCODER.encodeToString(buffer.array());
+    }
+
+    /**
+     * 解码排序键
+     *
+     * @param cursor 续传令牌
+     * @param size   排序键的数量
+     * @return 排序键, 令牌格式错误时返回null
+     */
+    public static long[] decode(String cursor, int size) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != size * Long.BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = buffer.getLong();
+        }
+        return keys;
+    }
+}
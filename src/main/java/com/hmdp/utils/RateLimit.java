@@ -0,0 +1,66 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流, 由 {@link RateLimitInterceptor} 基于Redis滑动窗口实现
+ * 同一个接口可以声明多条规则, 任意一条超限即拒绝请求
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimit.List.class)
+public @interface RateLimit {
+
+    /**
+     * 限流维度
+     */
+    LimitType type() default LimitType.IP;
+
+    /**
+     * type为PARAM时, 作为限流维度的请求参数或路径变量名
+     */
+    String param() default "";
+
+    /**
+     * 窗口内允许的请求数
+     */
+    int permits();
+
+    /**
+     * 窗口大小(秒)
+     */
+    int window();
+
+    /**
+     * 超限时返回的提示信息
+     */
+    String message() default "请求过于频繁, 请稍后再试";
+
+    enum LimitType {
+        /**
+         * 按客户端IP限流
+         */
+        IP,
+        /**
+         * 按登录用户限流, 未登录时按IP限流
+         */
+        USER,
+        /**
+         * 按请求参数限流
+         */
+        PARAM
+    }
+
+    @Documented
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface List {
+        RateLimit[] value();
+    }
+}
@@ -0,0 +1,147 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 限流拦截器
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private StringRedisTemplate stringRedisTemplate;
+    private ClientIpResolver clientIpResolver;
+
+    // 执行滑动窗口限流的Lua脚本, 一次检查接口上的全部规则
+    private static final DefaultRedisScript<List> RATE_LIMIT_SCRIPT;
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("scripts/rate_limit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(List.class);
+    }
+
+    // 接口方法 -> 限流规则, 避免每次请求都解析注解
+    private final Map<Method, List<RateLimit>> rules = new ConcurrentHashMap<>();
+
+    // 已被Redis判定超限的key -> 解除限制的时间, 在此之前的请求直接在本地拒绝
+    private final TimedCache<String, Long> blocked = CacheUtil.newTimedCache(TimeUnit.MINUTES.toMillis(1));
+
+    public RateLimitInterceptor(StringRedisTemplate stringRedisTemplate, ClientIpResolver clientIpResolver) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clientIpResolver = clientIpResolver;
+        this.blocked.schedulePrune(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    /**
+     * 按接口上声明的规则限流
+     *
+     * @param request  current HTTP request
+     * @param response current HTTP response
+     * @param handler  chosen handler to execute, for type and/or instance evaluation
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        Method method = ((HandlerMethod) handler).getMethod();
+        List<RateLimit> limits = rules.computeIfAbsent(method,
+                m -> new ArrayList<>(AnnotatedElementUtils.findMergedRepeatableAnnotations(m, RateLimit.class)));
+        if (limits.isEmpty()) {
+            return true;
+        }
+
+        String methodName = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        List<String> keys = new ArrayList<>(limits.size());
+        for (RateLimit limit : limits) {
+            keys.add(RATE_LIMIT_KEY + methodName + ":" + limit.type() + ":" + limit.window() + ":"
+                    + resolveDimension(limit, request));
+        }
+        int rejected = tryAcquire(keys, limits);
+        if (rejected >= 0) {
+            // 超限, 返回状态码: 429
+            response.setStatus(429);
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write(JSONUtil.toJsonStr(Result.fail(limits.get(rejected).message())));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 尝试获取全部规则的许可, 任意一条超限时都不记录本次请求
+     *
+     * @return 放行时返回-1, 否则返回超限规则的下标
+     */
+    private int tryAcquire(List<String> keys, List<RateLimit> limits) {
+        // 1. 本地已知超限, 不访问Redis
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.size(); i++) {
+            Long blockedUntil = blocked.get(keys.get(i), false);
+            if (blockedUntil != null && blockedUntil > now) {
+                return i;
+            }
+        }
+
+        // 2. 执行滑动窗口脚本, 返回{0, 0}表示放行, 否则为{超限规则的序号(从1开始), 需要等待的毫秒数}
+        String[] args = new String[limits.size() * 2 + 1];
+        args[0] = IdUtil.fastSimpleUUID();
+        for (int i = 0; i < limits.size(); i++) {
+            args[i * 2 + 1] = String.valueOf(TimeUnit.SECONDS.toMillis(limits.get(i).window()));
+            args[i * 2 + 2] = String.valueOf(limits.get(i).permits());
+        }
+        List<?> result = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT, keys, (Object[]) args);
+        if (result == null || result.size() < 2 || ((Number) result.get(0)).intValue() <= 0) {
+            return -1;
+        }
+        int index = ((Number) result.get(0)).intValue() - 1;
+        long waitMillis = ((Number) result.get(1)).longValue();
+
+        // 3. 超限期间被拒绝的请求不会计入窗口, 所以等待结束前的请求一定会被拒绝, 可以在本地直接拦截
+        blocked.put(keys.get(index), now + waitMillis, waitMillis);
+        return index;
+    }
+
+    private String resolveDimension(RateLimit limit, HttpServletRequest request) {
+        switch (limit.type()) {
+            case USER:
+                UserDTO user = UserHolder.getUser();
+                return user != null ? "user:" + user.getId() : "ip:" + clientIpResolver.getClientIp(request);
+            case PARAM:
+                String value = request.getParameter(limit.param());
+                if (value == null) {
+                    // 参数不在查询字符串中, 尝试从路径变量中获取
+                    @SuppressWarnings("unchecked")
+                    Map<String, String> pathVariables = (Map<String, String>)
+                            request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+                    value = pathVariables == null ? null : pathVariables.get(limit.param());
+                }
+                return limit.param() + ":" + StrUtil.nullToEmpty(value);
+            case IP:
+            default:
+                return "ip:" + clientIpResolver.getClientIp(request);
+        }
+    }
+}
@@ -5,24 +5,91 @@ public class RedisConstants {
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 36000L;
+    // 本地会话缓存的有效期(秒)
+    public static final Long LOGIN_USER_LOCAL_TTL = 5L;
+    // 剩余有效期低于该值(秒)时才续期, 即每个token至多10分钟续期一次
+    public static final Long LOGIN_USER_REFRESH_THRESHOLD = 35400L;
+    // 签名令牌模式下已注销的会话id
+    public static final String LOGIN_DENYLIST_KEY = "login:denylist";
 
     public static final Long CACHE_NULL_TTL = 2L;
     public static final String CACHE_NULL_VALUE = "";
 
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+    // 用户摘要本地缓存的有效期(秒)
+    public static final Long CACHE_USER_LOCAL_TTL = 60L;
+
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    // 商铺的ETag戳, 更新商铺的事务提交并删除缓存后递增
+    public static final String CACHE_SHOP_ETAG_KEY = "cache:shop-etag:";
 
     public static final Long CACHE_SHOP_TYPE_TTL = 30L;
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shop-type-list:";
+    // 商铺类型列表缓存内容的摘要, 作为ETag, 与列表同时写入
+    public static final String CACHE_SHOP_TYPE_ETAG_KEY = "cache:shop-type-list:etag";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
     public static final int MAX_RETRY_COUNT = 10;
     public static final int POOL_SIZE = 10;
 
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
+
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_LIKED_DELTA_KEY = "blog:liked-delta";
+    // 点赞状态本地缓存的有效期(秒)
+    public static final Long BLOG_LIKED_LOCAL_TTL = 10L;
+    // 点赞数增量同步到数据库的间隔(秒)
+    public static final Long BLOG_LIKED_FLUSH_INTERVAL = 5L;
+    public static final String BLOG_HOT_KEY = "blog:hot";
+    public static final String LOCK_BLOG_HOT_KEY = "lock:blog:hot";
+    // 热门排行已从数据库完整重建的标记, 存在时启动不再重建
+    public static final String BLOG_HOT_READY_KEY = "blog:hot:ready";
+    // 重建热门排行时使用的临时key, 完成后合并到热门排行
+    public static final String BLOG_HOT_REBUILD_KEY = "blog:hot:rebuild";
+    // 热度计算的起始时间戳(毫秒), 2026-01-01 00:00:00
+    public static final Long BLOG_HOT_EPOCH = 1767225600000L;
+    // 热度的半衰期(毫秒), 一天前的点赞只相当于现在的半个点赞
+    public static final Long BLOG_HOT_HALF_LIFE = 86400000L;
+
+    public static final Long CACHE_BLOG_TTL = 30L;
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final String BLOG_COMMENTS_DELTA_KEY = "blog:comments-delta";
+    // 评论数增量同步到数据库的间隔(秒)
+    public static final Long BLOG_COMMENTS_FLUSH_INTERVAL = 5L;
+    public static final String FOLLOWS_KEY = "follows:";
+    // 关注集合中的占位元素, 使没有关注任何人的用户集合也存在, 区分未加载与空集合
+    public static final String FOLLOWS_PLACEHOLDER = "0";
+
     public static final String FEED_KEY = "feed:";
+    public static final String FEED_OUTBOX_KEY = "feed:outbox:";
+    // 粉丝数超过阈值, 改为拉模式的作者
+    public static final String FEED_PULL_AUTHORS_KEY = "feed:pull-authors";
+    // 作者 -> 切换为拉模式的时间, 切换回推模式时从该时间起补推发件箱
+    public static final String FEED_PULL_SINCE_KEY = "feed:pull-since";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final String LOCK_SHOP_GEO_KEY = "lock:shop:geo";
+    // GEO集合已完整导入的标记, 之后由新增与更新商铺时增量维护, 启动时不再重复导入
+    public static final String SHOP_GEO_LOADED_KEY = "shop:geo-loaded";
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String LOCK_SIGN_ARCHIVE_KEY = "lock:sign:archive";
+    // 签到位图归档到数据库的间隔(小时)
+    public static final Long SIGN_ARCHIVE_INTERVAL = 1L;
+
+    public static final String UV_KEY = "uv:";
+    // 每日UV的保留时间(天)
+    public static final Long UV_TTL = 90L;
+    // UV按日期范围合并后的缓存时间(分钟)
+    public static final Long UV_RANGE_TTL = 10L;
+
+    // 上传图片的引用次数, field为文件名
+    public static final String IMAGE_REFS_KEY = "upload:image:refs";
+    public static final String LOCK_IMAGE_KEY = "lock:image:";
+    // 用户持有的上传图片引用次数, key后接用户id, field为文件名; 只能释放自己持有的引用
+    public static final String IMAGE_OWNER_KEY = "upload:image:owner:";
+    // 已生成的缩略图, field为原图文件名, value为已生成的宽度, 逗号分隔
+    public static final String IMAGE_VARIANTS_KEY = "upload:image:variants";
 }
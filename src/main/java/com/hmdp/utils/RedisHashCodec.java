@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+import java.util.Map;
+
+/**
+ * 对象与Redis Hash之间的转换
+ * 由各DTO手写实现, 不依赖反射, 值为null的字段不写入Hash, Hash中不存在的字段解码为null
+ */
+public interface RedisHashCodec<T> {
+    /**
+     * 对象转换为Hash, 值统一转换为字符串
+     */
+    public Map<String, String> encode(T value);
+
+    /**
+     * Hash转换为对象
+     */
+    public T decode(Map<?, ?> hash);
+}
@@ -0,0 +1,61 @@
+package com.hmdp.utils;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 统计每个请求发送的Redis命令与往返次数
+ * 代理Lettuce连接工厂, 为取出的每个连接再套一层代理, 在调用命令方法时计入RequestStats;
+ * 管道中的命令只计命令数, 关闭管道时计一次往返. Redisson使用独立的连接, 不在统计范围内
+ */
+@Component
+public class RedisRoundTripCounter implements BeanPostProcessor {
+
+    // 连接上不会访问Redis的方法
+    private static final Set<String> NON_COMMANDS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined",
+            "openPipeline", "closePipeline", "getSentinelConnection", "toString", "hashCode", "equals"));
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof LettuceConnectionFactory)) {
+            return bean;
+        }
+        // 代理子类, 注入LettuceConnectionFactory类型的地方不受影响
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            Object result = invocation.proceed();
+            if ("getConnection".equals(invocation.getMethod().getName()) && result instanceof RedisConnection) {
+                return countCommands((RedisConnection) result);
+            }
+            return result;
+        });
+        return factory.getProxy();
+    }
+
+    private static RedisConnection countCommands(RedisConnection connection) {
+        ProxyFactory factory = new ProxyFactory(connection);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            RequestStats stats = RequestStats.current();
+            if (stats != null) {
+                String name = invocation.getMethod().getName();
+                if ("closePipeline".equals(name)) {
+                    stats.redisRoundTrip();
+                } else if (!NON_COMMANDS.contains(name) && !name.endsWith("Commands")) {
+                    stats.redisCommand(!connection.isPipelined());
+                }
+            }
+            return invocation.proceed();
+        });
+        return (RedisConnection) factory.getProxy();
+    }
+}
@@ -0,0 +1,130 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求指标拦截器
+ * 按接口方法记录耗时的直方图, 以及每个请求访问Redis与数据库的次数;
+ * 超过阈值的慢请求单独计数并打印一行日志, 便于找出往返次数过多的接口
+ */
+@Slf4j
+public class RequestMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdNanos;
+
+    // 接口 -> 指标, 避免每次请求都按名称和标签查找
+    private final Map<String, HandlerMeters> meters = new ConcurrentHashMap<>();
+
+    public RequestMetricsInterceptor(MeterRegistry meterRegistry, long slowThresholdMillis) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        RequestStats.start();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, @Nullable Exception ex) {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        RequestStats stats = RequestStats.current();
+        RequestStats.end();
+        if (start == null || stats == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // 1. 记录耗时与往返次数
+        String name = handlerName(request, handler);
+        HandlerMeters m = meters.computeIfAbsent(name, this::createMeters);
+        m.latency.record(elapsed, TimeUnit.NANOSECONDS);
+        m.redisCommands.record(stats.getRedisCommands());
+        m.redisRoundTrips.record(stats.getRedisRoundTrips());
+        m.dbStatements.record(stats.getDbStatements());
+
+        // 2. 慢请求
+        if (elapsed >= slowThresholdNanos) {
+            m.slow.increment();
+            log.warn("慢请求: {} {}ms, redis: {}次命令/{}次往返, sql: {}条",
+                    name, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    stats.getRedisCommands(), stats.getRedisRoundTrips(), stats.getDbStatements());
+        }
+    }
+
+    /**
+     * 接口方法名作为标签, 数量有限; 不是接口方法时(如静态资源)使用匹配的路径模式
+     */
+    private static String handlerName(HttpServletRequest request, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "unknown" : pattern.toString();
+    }
+
+    private HandlerMeters createMeters(String name) {
+        return new HandlerMeters(
+                Timer.builder("hmdp.request.latency")
+                        .description("接口耗时")
+                        .tag("handler", name)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(meterRegistry),
+                summary("hmdp.request.redis.commands", "每个请求发送的Redis命令数", name),
+                summary("hmdp.request.redis.round-trips", "每个请求与Redis的往返次数", name),
+                summary("hmdp.request.db.statements", "每个请求执行的SQL语句数", name),
+                Counter.builder("hmdp.request.slow")
+                        .description("超过阈值的慢请求数")
+                        .tag("handler", name)
+                        .register(meterRegistry));
+    }
+
+    private DistributionSummary summary(String metric, String description, String name) {
+        return DistributionSummary.builder(metric)
+                .description(description)
+                .tag("handler", name)
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50)
+                .register(meterRegistry);
+    }
+
+    private static class HandlerMeters {
+        private final Timer latency;
+        private final DistributionSummary redisCommands;
+        private final DistributionSummary redisRoundTrips;
+        private final DistributionSummary dbStatements;
+        private final Counter slow;
+
+        private HandlerMeters(Timer latency, DistributionSummary redisCommands, DistributionSummary redisRoundTrips,
+                              DistributionSummary dbStatements, Counter slow) {
+            this.latency = latency;
+            this.redisCommands = redisCommands;
+            this.redisRoundTrips = redisRoundTrips;
+            this.dbStatements = dbStatements;
+            this.slow = slow;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.hmdp.utils;
+
+/**
+ * 当前请求内访问Redis与数据库的次数
+ * 由RequestMetricsInterceptor在请求开始时创建、结束时清除; 后台线程中没有该对象, 不计数
+ */
+public class RequestStats {
+    private static final ThreadLocal<RequestStats> tl = new ThreadLocal<>();
+
+    // 发送的Redis命令数量, 管道中的每条命令都计入
+    private int redisCommands;
+    // 与Redis的往返次数, 一个管道只算一次
+    private int redisRoundTrips;
+    // 执行的SQL语句数量
+    private int dbStatements;
+
+    public static void start() {
+        tl.set(new RequestStats());
+    }
+
+    /**
+     * @return 当前请求的统计, 不在请求中时返回null
+     */
+    public static RequestStats current() {
+        return tl.get();
+    }
+
+    public static void end() {
+        tl.remove();
+    }
+
+    public void redisCommand(boolean roundTrip) {
+        redisCommands++;
+        if (roundTrip) {
+            redisRoundTrips++;
+        }
+    }
+
+    public void redisRoundTrip() {
+        redisRoundTrips++;
+    }
+
+    public void dbStatement() {
+        dbStatements++;
+    }
+
+    public int getRedisCommands() {
+        return redisCommands;
+    }
+
+    public int getRedisRoundTrips() {
+        return redisRoundTrips;
+    }
+
+    public int getDbStatements() {
+        return dbStatements;
+    }
+}
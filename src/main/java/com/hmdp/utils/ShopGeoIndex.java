@@ -0,0 +1,409 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 商铺坐标的本地网格索引, 不经过Redis即可查询附近的商铺
+ * 按商铺类型把经纬度划分为固定大小的网格, 每个网格用基本类型数组保存商铺id与坐标;
+ * 查询时只扫描可能命中的网格, 再用与Redis GEO相同的半正矢公式计算精确距离
+ * <p>
+ * 仅在 hmdp.shop.nearby-mode=local 时建立
+ */
+@Component
+public class ShopGeoIndex extends AbstractShopIndex {
+
+    public static final String NEARBY_MODE_LOCAL = "local";
+
+    // 与Redis GEO一致的地球半径(米)
+    private static final double EARTH_RADIUS = 6372797.560856;
+    // 网格边长(度), 纬度方向约1.1公里
+    private static final double CELL_SIZE = 0.01;
+    private static final int ROWS = (int) Math.round(180 / CELL_SIZE);
+    private static final int COLUMNS = (int) Math.round(360 / CELL_SIZE);
+    // 最近邻查询最多逐圈扫描的圈数, 约220公里, 超过后扫描该类型的全部商铺
+    private static final int MAX_RINGS = 200;
+
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 商铺类型 -> 网格
+    private final Map<Long, Grid> grids = new HashMap<>();
+    // 商铺id -> 所在的类型与网格, 用于修改坐标或类型时移除旧位置
+    private final Map<Integer, Location> locations = new HashMap<>();
+
+    public ShopGeoIndex(@Value("${hmdp.shop.nearby-mode:redis}") String nearbyMode) {
+        this.enabled = NEARBY_MODE_LOCAL.equalsIgnoreCase(nearbyMode);
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected String[] columns() {
+        return new String[]{"type_id", "x", "y"};
+    }
+
+    @Override
+    protected String name() {
+        return "商铺网格索引";
+    }
+
+    /**
+     * 未启用时不维护网格, 调用方在新增和更新商铺时可以无条件调用
+     */
+    @Override
+    public void put(Shop shop) {
+        if (!enabled) {
+            return;
+        }
+        Integer id = toIntId(shop.getId());
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Location old = locations.remove(id);
+            if (old != null) {
+                grids.get(old.typeId).remove(old.cell, id);
+            }
+            if (shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+                return;
+            }
+            long cell = cellOf(row(shop.getY()), column(shop.getX()));
+            grids.computeIfAbsent(shop.getTypeId(), k -> new Grid()).add(cell, id, shop.getX(), shop.getY());
+            locations.put(id, new Location(shop.getTypeId(), cell));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Location old = locations.remove(id);
+            if (old != null) {
+                grids.get(old.typeId).remove(old.cell, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected int[] indexedIds() {
+        lock.readLock().lock();
+        try {
+            return locations.keySet().stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询半径内的商铺
+     *
+     * @param typeId 商铺类型
+     * @param x      经度
+     * @param y      纬度
+     * @param radius 半径(米)
+     * @param limit  最多返回的数量
+     * @return 按距离升序排列的商铺
+     */
+    public List<Hit> radius(Long typeId, double x, double y, double radius, int limit) {
+        long[] hits;
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            Grid grid = grids.get(typeId);
+            if (grid == null) {
+                return Collections.emptyList();
+            }
+            // 1. 计算半径对应的网格范围, 靠近两极或半径很大时扫描整圈经度
+            double dLat = Math.toDegrees(radius / EARTH_RADIUS);
+            int rowMin = row(y - dLat);
+            int rowMax = row(y + dLat);
+            double maxLat = Math.min(90, Math.abs(y) + dLat);
+            double dLon = maxLat >= 90 ? 180 : Math.toDegrees(radius / (EARTH_RADIUS * Math.cos(Math.toRadians(maxLat))));
+            int colMin = 0;
+            int colMax = COLUMNS - 1;
+            if (dLon < 180) {
+                colMin = (int) Math.floor((x - dLon + 180) / CELL_SIZE);
+                colMax = (int) Math.floor((x + dLon + 180) / CELL_SIZE);
+                if (colMax - colMin + 1 >= COLUMNS) {
+                    colMin = 0;
+                    colMax = COLUMNS - 1;
+                }
+            }
+
+            // 2. 扫描网格, 计算精确距离
+            hits = new long[16];
+            for (int r = rowMin; r <= rowMax; r++) {
+                for (int c = colMin; c <= colMax; c++) {
+                    Cell cell = grid.cells.get(cellOf(r, Math.floorMod(c, COLUMNS)));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        double distance = haversine(x, y, cell.xs[i], cell.ys[i]);
+                        if (distance <= radius) {
+                            if (count == hits.length) {
+                                hits = Arrays.copyOf(hits, count * 2);
+                            }
+                            hits[count++] = pack(distance, cell.ids[i]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return toHits(hits, count, limit);
+    }
+
+    /**
+     * 查询最近的k个商铺
+     * 从所在网格开始逐圈向外扫描, 当下一圈可能出现的最短距离大于当前第k近的距离时停止;
+     * 附近商铺过少或靠近两极时退化为扫描该类型的全部商铺
+     *
+     * @param typeId 商铺类型
+     * @param x      经度
+     * @param y      纬度
+     * @param k      数量
+     * @return 按距离升序排列的商铺
+     */
+    public List<Hit> nearest(Long typeId, double x, double y, int k) {
+        long[] hits;
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            Grid grid = grids.get(typeId);
+            if (grid == null || k <= 0) {
+                return Collections.emptyList();
+            }
+            int row0 = row(y);
+            int col0 = column(x);
+            hits = new long[Math.max(16, Math.min(k, grid.size))];
+            int seen = 0;
+            for (int ring = 0; ; ring++) {
+                // 1. 扫描第ring圈的网格: 上下两行扫描整行, 中间各行只扫描两端
+                for (int r = row0 - ring; r <= row0 + ring; r++) {
+                    if (r < 0 || r >= ROWS) {
+                        continue;
+                    }
+                    int step = Math.abs(r - row0) == ring ? 1 : Math.max(1, 2 * ring);
+                    for (int c = col0 - ring; c <= col0 + ring; c += step) {
+                        Cell cell = grid.cells.get(cellOf(r, Math.floorMod(c, COLUMNS)));
+                        if (cell == null) {
+                            continue;
+                        }
+                        seen += cell.size;
+                        for (int i = 0; i < cell.size; i++) {
+                            if (count == hits.length) {
+                                hits = Arrays.copyOf(hits, count * 2);
+                            }
+                            hits[count++] = pack(haversine(x, y, cell.xs[i], cell.ys[i]), cell.ids[i]);
+                        }
+                    }
+                }
+
+                // 2. 已扫描该类型的全部商铺时停止
+                if (seen >= grid.size) {
+                    break;
+                }
+                // 3. 扫描范围过大或到达两极时, 经度方向的距离下界失效, 改为扫描全部商铺
+                if (ring >= MAX_RINGS || row0 - ring <= 0 || row0 + ring >= ROWS - 1) {
+                    count = 0;
+                    for (Cell cell : grid.cells.values()) {
+                        for (int i = 0; i < cell.size; i++) {
+                            if (count == hits.length) {
+                                hits = Arrays.copyOf(hits, count * 2);
+                            }
+                            hits[count++] = pack(haversine(x, y, cell.xs[i], cell.ys[i]), cell.ids[i]);
+                        }
+                    }
+                    break;
+                }
+                // 4. 只保留最近的k个, 下一圈的最短可能距离大于第k近的距离时停止
+                if (count >= k) {
+                    Arrays.sort(hits, 0, count);
+                    count = k;
+                    if (lowerBound(x, y, row0, col0, ring) > unpackDistance(hits[k - 1])) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return toHits(hits, count, k);
+    }
+
+    /**
+     * 扫描完0~ring圈后, 未扫描区域中的点到查询点的最短可能距离
+     * 纬度差Δφ对应的距离至少为R·Δφ; 纬度都不超过φm时, 经度差Δλ对应的距离至少为2R·asin(cosφm·sin(Δλ/2))
+     */
+    private static double lowerBound(double x, double y, int row0, int col0, int ring) {
+        double latLow = (row0 - ring) * CELL_SIZE - 90;
+        double latHigh = (row0 + ring + 1) * CELL_SIZE - 90;
+        double latBound = Math.min(y - latLow, latHigh - y);
+        double lonLow = (col0 - ring) * CELL_SIZE - 180;
+        double lonHigh = (col0 + ring + 1) * CELL_SIZE - 180;
+        // 经度归一化到[-180, 180), 与column()的取模一致
+        double lon = x - 360 * Math.floor((x + 180) / 360);
+        double lonBound = Math.min(lon - lonLow, lonHigh - lon);
+        double maxLat = Math.min(90, Math.max(Math.abs(latLow), Math.abs(latHigh)));
+        double lonDistance = 2 * EARTH_RADIUS * Math.asin(Math.min(1,
+                Math.cos(Math.toRadians(maxLat)) * Math.sin(Math.toRadians(lonBound) / 2)));
+        return Math.min(EARTH_RADIUS * Math.toRadians(latBound), lonDistance);
+    }
+
+    /**
+     * 半正矢公式, 与Redis GEO的计算方式一致
+     */
+    private static double haversine(double lon1, double lat1, double lon2, double lat2) {
+        double lat1r = Math.toRadians(lat1);
+        double lat2r = Math.toRadians(lat2);
+        double u = Math.sin((lat2r - lat1r) / 2);
+        double v = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(u * u + Math.cos(lat1r) * Math.cos(lat2r) * v * v));
+    }
+
+    /**
+     * 以厘米为单位的距离与商铺id编码为一个long, 按long排序即按距离、id排序; 地球上的距离不超过31位
+     */
+    private static long pack(double distance, int id) {
+        return (Math.round(distance * 100) << 32) | id;
+    }
+
+    private static double unpackDistance(long key) {
+        return (key >>> 32) / 100.0;
+    }
+
+    private static List<Hit> toHits(long[] hits, int count, int limit) {
+        Arrays.sort(hits, 0, count);
+        int size = Math.min(count, limit);
+        List<Hit> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new Hit(hits[i] & 0xFFFFFFFFL, unpackDistance(hits[i])));
+        }
+        return result;
+    }
+
+    private static int row(double lat) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((lat + 90) / CELL_SIZE)));
+    }
+
+    private static int column(double lon) {
+        return Math.floorMod((int) Math.floor((lon + 180) / CELL_SIZE), COLUMNS);
+    }
+
+    private static long cellOf(int row, int column) {
+        return (long) row * COLUMNS + column;
+    }
+
+    /**
+     * 查询结果
+     */
+    public static class Hit {
+        private final Long id;
+        private final Double distance;
+
+        private Hit(Long id, Double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        /**
+         * @return 距离(米)
+         */
+        public Double getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Location {
+        private final Long typeId;
+        private final long cell;
+
+        private Location(Long typeId, long cell) {
+            this.typeId = typeId;
+            this.cell = cell;
+        }
+    }
+
+    private static class Grid {
+        private final Map<Long, Cell> cells = new HashMap<>();
+        private int size = 0;
+
+        private void add(long key, int id, double x, double y) {
+            cells.computeIfAbsent(key, k -> new Cell()).add(id, x, y);
+            size++;
+        }
+
+        private void remove(long key, int id) {
+            Cell cell = cells.get(key);
+            if (cell != null && cell.remove(id)) {
+                size--;
+                if (cell.size == 0) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个网格中的商铺, 商铺id与坐标分别保存在基本类型数组中
+     */
+    private static class Cell {
+        private int[] ids = new int[4];
+        private double[] xs = new double[4];
+        private double[] ys = new double[4];
+        private int size = 0;
+
+        private void add(int id, double x, double y) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            ids[size] = id;
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    // 用最后一个元素填补空位
+                    size--;
+                    ids[i] = ids[size];
+                    xs[i] = xs[size];
+                    ys[i] = ys[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.entity.Shop;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 商铺名称与商圈的本地倒排索引
+ * 对每个字段切分出单字和相邻两字(n-gram), 每个词项对应一个有序的int商铺id数组;
+ * 查询时对关键字的各个词项求交集, 再用原文校验并排序, 不再对数据库执行LIKE '%关键字%'的全表扫描
+ */
+@Component
+public class ShopSearchIndex extends AbstractShopIndex {
+
+    // 排序的匹配等级: 名称完全相同 > 名称前缀 > 名称包含 > 仅商圈包含
+    private static final int TIER_NAME_EQUAL = 0;
+    private static final int TIER_NAME_PREFIX = 1;
+    private static final int TIER_NAME_CONTAINS = 2;
+    private static final int TIER_AREA = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 词项 -> 有序的商铺id
+    private final Map<String, Postings> postings = new HashMap<>();
+    // 商铺id -> 归一化后的名称与商圈, 用于校验候选结果与删除旧词项
+    private final Map<Integer, Doc> docs = new HashMap<>();
+
+    @Override
+    protected String[] columns() {
+        return new String[]{"name", "area"};
+    }
+
+    @Override
+    protected String name() {
+        return "商铺搜索索引";
+    }
+
+    /**
+     * 搜索商铺
+     *
+     * @param keyword 关键字
+     * @param from    跳过的结果数量
+     * @param size    返回的结果数量
+     * @return 按相关度排序的商铺id
+     */
+    public List<Long> search(String keyword, int from, int size) {
+        String text = normalize(keyword);
+        if (text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> terms = text.length() == 1 ? Collections.singleton(text) : grams(text, 2);
+
+        long[] hits;
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            // 1. 取出各词项的倒排表, 任意一个不存在则没有结果
+            Postings[] lists = new Postings[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists[i++] = list;
+            }
+            // 2. 从最短的倒排表开始求交集
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            Postings shortest = lists[0];
+            hits = new long[shortest.size];
+            outer:
+            for (int j = 0; j < shortest.size; j++) {
+                int id = shortest.ids[j];
+                for (int k = 1; k < lists.length; k++) {
+                    if (!lists[k].contains(id)) {
+                        continue outer;
+                    }
+                }
+                // 3. 词项都命中不代表原文连续出现, 用原文校验并计算匹配等级
+                Doc doc = docs.get(id);
+                int tier = doc == null ? -1 : doc.tier(text);
+                if (tier >= 0) {
+                    // 等级、名称长度、id依次作为排序键, 编码为一个long后用基本类型排序
+                    long nameLength = Math.min(doc.name.length(), 0xFFFFFF);
+                    hits[count++] = ((long) tier << 56) | (nameLength << 32) | id;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 4. 排序并分页
+        Arrays.sort(hits, 0, count);
+        if (from >= count) {
+            return Collections.emptyList();
+        }
+        int to = Math.min(count, from + size);
+        List<Long> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add(hits[i] & 0xFFFFFFFFL);
+        }
+        return ids;
+    }
+
+    @Override
+    public void put(Shop shop) {
+        Integer id = toIntId(shop.getId());
+        if (id == null) {
+            return;
+        }
+        Doc doc = new Doc(normalize(shop.getName()), normalize(shop.getArea()));
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.put(id, doc);
+            if (old != null && old.name.equals(doc.name) && old.area.equals(doc.area)) {
+                return;
+            }
+            if (old != null) {
+                removePostings(id, old);
+            }
+            for (String term : doc.terms()) {
+                postings.computeIfAbsent(term, k -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.remove(id);
+            if (old != null) {
+                removePostings(id, old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected int[] indexedIds() {
+        lock.readLock().lock();
+        try {
+            return docs.keySet().stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removePostings(int id, Doc doc) {
+        for (String term : doc.terms()) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * 去掉空白并转为小写
+     */
+    private static String normalize(String s) {
+        return s == null ? "" : StrUtil.cleanBlank(s).toLowerCase();
+    }
+
+    private static Set<String> grams(String text, int n) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + n <= text.length(); i++) {
+            grams.add(text.substring(i, i + n));
+        }
+        return grams;
+    }
+
+    private static class Doc {
+        private final String name;
+        private final String area;
+
+        private Doc(String name, String area) {
+            this.name = name;
+            this.area = area;
+        }
+
+        /**
+         * 单字与相邻两字都建立索引, 单字用于只输入一个字的查询
+         */
+        private Set<String> terms() {
+            Set<String> terms = new LinkedHashSet<>();
+            for (String field : new String[]{name, area}) {
+                terms.addAll(grams(field, 1));
+                terms.addAll(grams(field, 2));
+            }
+            return terms;
+        }
+
+        /**
+         * @return 匹配等级, 原文中不包含关键字时返回-1
+         */
+        private int tier(String text) {
+            int index = name.indexOf(text);
+            if (index == 0) {
+                return name.length() == text.length() ? TIER_NAME_EQUAL : TIER_NAME_PREFIX;
+            }
+            if (index > 0) {
+                return TIER_NAME_CONTAINS;
+            }
+            return area.contains(text) ? TIER_AREA : -1;
+        }
+    }
+
+    /**
+     * 有序的int数组, 避免装箱, 查询时二分查找
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void add(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
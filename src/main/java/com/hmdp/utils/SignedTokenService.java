@@ -0,0 +1,250 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 无状态的签名令牌
+ * 令牌格式为 base64url(载荷).base64url(HmacSHA256签名), 载荷包含会话id、过期时间及UserDTO,
+ * 校验时不需要任何I/O; 注销的会话id记录在Redis的黑名单中, 并定时同步到本地
+ */
+@Slf4j
+@Component
+public class SignedTokenService {
+
+    public static final String TOKEN_MODE_SIGNED = "signed";
+    // 续期后的新令牌通过该响应头返回
+    public static final String RENEWED_TOKEN_HEADER = "x-renewed-token";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // HmacSHA256密钥的最小长度(字节)
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<Mac> macHolder;
+
+    // 本地黑名单: 会话id -> 注销时间
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile long lastSyncTime = 0L;
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public SignedTokenService(StringRedisTemplate stringRedisTemplate,
+                              @Value("${hmdp.login.token-mode:redis}") String tokenMode,
+                              @Value("${hmdp.login.secret:}") String secret) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = TOKEN_MODE_SIGNED.equalsIgnoreCase(tokenMode);
+        if (!enabled) {
+            // Redis会话模式不使用密钥
+            this.secretKey = null;
+            this.macHolder = null;
+            return;
+        }
+        if (StrUtil.isBlank(secret) || secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("签名令牌模式必须通过环境变量HMDP_LOGIN_SECRET配置至少"
+                    + MIN_SECRET_LENGTH + "字节的 hmdp.login.secret");
+        }
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.macHolder = ThreadLocal.withInitial(this::newMac);
+    }
+
+    @PostConstruct
+    private void init() {
+        if (enabled) {
+            syncExecutor.scheduleWithFixedDelay(this::syncDenylist, 0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        syncExecutor.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 为登录用户签发令牌
+     */
+    public String create(UserDTO user) {
+        return sign(RandomUtil.randomLong(Long.MAX_VALUE), user);
+    }
+
+    /**
+     * 校验令牌, 剩余有效期低于阈值时通过响应头下发续期后的令牌
+     *
+     * @return 令牌有效时返回登录用户, 否则返回null
+     */
+    public UserDTO verify(String token, HttpServletResponse response) {
+        // 1. 校验签名
+        byte[] payload = verifiedPayload(token);
+        if (payload == null) {
+            return null;
+        }
+
+        // 2. 解析载荷并校验有效期
+        long sessionId;
+        long expireAt;
+        UserDTO user = new UserDTO();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            sessionId = in.readLong();
+            expireAt = in.readLong();
+            user.setId(in.readLong());
+            user.setNickName(readNullable(in));
+            user.setIcon(readNullable(in));
+        } catch (IOException e) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (expireAt <= now) {
+            return null;
+        }
+
+        // 3. 检查本地黑名单
+        if (revoked.containsKey(String.valueOf(sessionId))) {
+            return null;
+        }
+
+        // 4. 滑动续期, 沿用原来的会话id, 使注销对续期后的令牌同样生效
+        if (expireAt - now < TimeUnit.SECONDS.toMillis(LOGIN_USER_REFRESH_THRESHOLD)) {
+            response.setHeader(RENEWED_TOKEN_HEADER, sign(sessionId, user));
+        }
+        return user;
+    }
+
+    /**
+     * 注销令牌所属的会话, 签名无效的令牌直接忽略, 不能借此把任意会话加入黑名单
+     */
+    public void revoke(String token) {
+        byte[] payload = verifiedPayload(token);
+        if (payload == null) {
+            return;
+        }
+        long sessionId;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            sessionId = in.readLong();
+        } catch (IOException e) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String member = String.valueOf(sessionId);
+        revoked.put(member, now);
+        // 写入黑名单, 同时清理已超过令牌最长有效期的记录, 保持黑名单足够小
+        stringRedisTemplate.opsForZSet().add(LOGIN_DENYLIST_KEY, member, now);
+        stringRedisTemplate.opsForZSet().removeRangeByScore(
+                LOGIN_DENYLIST_KEY, 0, now - TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL));
+    }
+
+    /**
+     * 增量同步Redis中的黑名单到本地
+     */
+    private void syncDenylist() {
+        try {
+            long now = System.currentTimeMillis();
+            // 多取1秒, 容忍节点间的时钟偏差
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(LOGIN_DENYLIST_KEY, Math.max(0, lastSyncTime - 1000), Double.MAX_VALUE);
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    revoked.put(tuple.getValue(), tuple.getScore() == null ? now : tuple.getScore().longValue());
+                }
+            }
+            lastSyncTime = now;
+            // 注销超过令牌有效期的会话, 其令牌已全部过期, 无需继续保留
+            long deadline = now - TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL);
+            revoked.values().removeIf(revokeTime -> revokeTime < deadline);
+        } catch (Exception e) {
+            log.error("同步令牌黑名单失败", e);
+        }
+    }
+
+    /**
+     * 拆分载荷与签名并校验签名, 使用定长比较避免时序攻击
+     *
+     * @return 签名有效时返回载荷, 否则返回null
+     */
+    private byte[] verifiedPayload(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return MessageDigest.isEqual(macHolder.get().doFinal(payload), signature) ? payload : null;
+    }
+
+    private String sign(long sessionId, UserDTO user) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(sessionId);
+            out.writeLong(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL));
+            out.writeLong(user.getId());
+            writeNullable(out, user.getNickName());
+            writeNullable(out, user.getIcon());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(macHolder.get().doFinal(payload));
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
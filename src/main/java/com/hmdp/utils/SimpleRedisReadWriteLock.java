@@ -0,0 +1,87 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import cn.hutool.core.lang.UUID;
+
+public class SimpleRedisReadWriteLock implements IReadWriteLock {
+
+    private String name;
+    private StringRedisTemplate stringRedisTemplate;
+
+    public SimpleRedisReadWriteLock(String name, StringRedisTemplate stringRedisTemplate) {
+        this.name = name;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    private static final String KEY_PREFIX = "rwlock:";
+    // 随机ID, 加上线程ID, 保证每个线程持有的锁都是唯一的, 避免误删锁
+    private static final String ID_PREFIX = UUID.randomUUID().toString() + "-";
+
+    private static final DefaultRedisScript<Long> READ_VERSION_SCRIPT;
+    private static final DefaultRedisScript<Long> WRITE_LOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> WRITE_UNLOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> VERSIONED_SET_SCRIPT;
+    static {
+        READ_VERSION_SCRIPT = loadScript("scripts/rw_read_version.lua");
+        WRITE_LOCK_SCRIPT = loadScript("scripts/rw_write_lock.lua");
+        // 写锁的释放与普通锁相同, 比较持有者后删除
+        WRITE_UNLOCK_SCRIPT = loadScript("scripts/unlock.lua");
+        VERSIONED_SET_SCRIPT = loadScript("scripts/rw_versioned_set.lua");
+    }
+
+    private static DefaultRedisScript<Long> loadScript(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    @Override
+    public Long tryReadVersion() {
+        Long version = stringRedisTemplate.execute(READ_VERSION_SCRIPT, Arrays.asList(writeKey(), versionKey()));
+        // 返回负数说明写锁被占用
+        return version == null || version < 0 ? null : version;
+    }
+
+    @Override
+    public Long tryWriteLock(long timeoutSec) {
+        Long version = stringRedisTemplate.execute(
+                WRITE_LOCK_SCRIPT,
+                Arrays.asList(writeKey(), versionKey()),
+                ownerId(), String.valueOf(TimeUnit.SECONDS.toMillis(timeoutSec)));
+        return version == null || version < 0 ? null : version;
+    }
+
+    @Override
+    public void unlockWrite() {
+        stringRedisTemplate.execute(WRITE_UNLOCK_SCRIPT, Collections.singletonList(writeKey()), ownerId());
+    }
+
+    @Override
+    public boolean setIfVersion(String key, String value, long version, long time, TimeUnit unit) {
+        Long result = stringRedisTemplate.execute(
+                VERSIONED_SET_SCRIPT,
+                Arrays.asList(key, writeKey(), versionKey()),
+                String.valueOf(version), value, String.valueOf(unit.toMillis(time)));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    private String ownerId() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
+
+    private String writeKey() {
+        return KEY_PREFIX + name + ":write";
+    }
+
+    private String versionKey() {
+        return KEY_PREFIX + name + ":version";
+    }
+}
@@ -0,0 +1,26 @@
+package com.hmdp.utils;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+
+/**
+ * 统计每个请求执行的SQL语句数量
+ * 拦截StatementHandler.prepare, 只有真正发往数据库的语句才会计数(包括分页插件的COUNT查询)
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class SqlStatementCounter implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        RequestStats stats = RequestStats.current();
+        if (stats != null) {
+            stats.dbStatement();
+        }
+        return invocation.proceed();
+    }
+}
@@ -1,8 +1,11 @@
 package com.hmdp.utils;
 
 public class SystemConstants {
-    public static final String IMAGE_UPLOAD_DIR = "D:\\lesson\\nginx-1.18.0\\html\\hmdp\\imgs\\";
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    // 附近商铺的搜索半径(米)
+    public static final double NEARBY_SHOP_RADIUS = 5000;
+    // 上传图片生成的缩略图宽度(像素), 不超过原图宽度
+    public static final int[] IMAGE_VARIANT_WIDTHS = {160, 320, 640};
 }
@@ -0,0 +1,248 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.ImageVariantsDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.IMAGE_VARIANTS_KEY;
+
+/**
+ * 上传图片的缩略图生成
+ * 上传后把任务提交到有界线程池, 用纯Java(ImageIO + Java2D)按多个宽度缩放, 写到原图所在目录,
+ * 完成后在Redis中记录已生成的宽度; 查询时只返回已生成的缩略图, 未完成前使用原图
+ */
+@Slf4j
+@Component
+public class ThumbnailPipeline {
+
+    private static final int WORKERS = 2;
+    private static final int QUEUE_CAPACITY = 200;
+    // 超过该像素数的图片不生成缩略图, 避免解压炸弹长时间占用工作线程
+    private static final long MAX_PIXELS = 40_000_000L;
+    // 解码时隔行隔列采样, 解码后的像素数不超过该值, 每个工作线程占用的内存约在16MB以内
+    private static final long MAX_DECODED_PIXELS = 4_000_000L;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ImageStore imageStore;
+
+    // 缩放是CPU密集型任务, 线程数与队列长度都有上限; 队列满时丢弃任务, 不影响上传, 图片仍可按原图展示
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), (r, e) -> onRejected());
+
+    private final Timer jobTimer;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+
+    public ThumbnailPipeline(StringRedisTemplate stringRedisTemplate, ImageStore imageStore, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.imageStore = imageStore;
+        Gauge.builder("image.thumbnail.queue", executor, e -> e.getQueue().size())
+                .description("等待生成缩略图的图片数量")
+                .register(meterRegistry);
+        Gauge.builder("image.thumbnail.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("正在生成缩略图的图片数量")
+                .register(meterRegistry);
+        this.jobTimer = Timer.builder("image.thumbnail.duration")
+                .description("一张图片生成全部缩略图的耗时")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("image.thumbnail.failed")
+                .description("生成缩略图失败的次数")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("image.thumbnail.rejected")
+                .description("队列已满被丢弃的任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    private void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 提交缩略图任务, 相同内容的图片已生成过时直接跳过
+     *
+     * @param name 原图文件名
+     */
+    public void submit(String name) {
+        if (!ImageStore.isContentName(name)
+                || stringRedisTemplate.opsForHash().hasKey(IMAGE_VARIANTS_KEY, name)) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                generate(name);
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.error("生成缩略图失败, name: {}", name, e);
+            } finally {
+                jobTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    /**
+     * 查询图片已生成的缩略图
+     *
+     * @param name 原图文件名
+     * @return 原图与各宽度缩略图的文件名
+     */
+    public ImageVariantsDTO queryVariants(String name) {
+        ImageVariantsDTO dto = new ImageVariantsDTO();
+        dto.setName(name);
+        Object widths = stringRedisTemplate.opsForHash().get(IMAGE_VARIANTS_KEY, name);
+        dto.setReady(widths != null);
+        Map<Integer, String> variants = new LinkedHashMap<>();
+        for (String width : StrUtil.split(widths == null ? "" : widths.toString(), ',', true, true)) {
+            variants.put(Integer.valueOf(width), ImageStore.variantName(name, Integer.parseInt(width)));
+        }
+        dto.setVariants(variants);
+        return dto;
+    }
+
+    private void generate(String name) throws IOException {
+        Path source = imageStore.resolve(name);
+        String suffix = StrUtil.subAfter(name, ".", true);
+        // 1. 没有对应编码器的格式(如gif动图)不生成缩略图, 直接记录为已完成
+        BufferedImage image = null;
+        if (ImageIO.getImageWritersBySuffix(suffix).hasNext()) {
+            image = readSubsampled(source);
+        }
+
+        // 2. 按各个宽度缩放并编码到临时文件, 比原图宽的尺寸跳过
+        Map<Integer, Path> encoded = new LinkedHashMap<>();
+        try {
+            if (image != null) {
+                for (int width : SystemConstants.IMAGE_VARIANT_WIDTHS) {
+                    if (width >= image.getWidth()) {
+                        break;
+                    }
+                    Path tmp = imageStore.createTempFile();
+                    encoded.put(width, tmp);
+                    if (!ImageIO.write(resize(image, width, "png".equalsIgnoreCase(suffix)), suffix, tmp.toFile())) {
+                        throw new IOException("无法编码图片: " + suffix);
+                    }
+                }
+            }
+
+            // 3. 在原图的锁内移动到目标位置并记录, 原图已被删除时放弃
+            RLock lock = imageStore.getLock(ImageStore.digestOf(name));
+            lock.lock();
+            try {
+                if (!Files.exists(source)) {
+                    return;
+                }
+                for (Map.Entry<Integer, Path> entry : encoded.entrySet()) {
+                    Files.move(entry.getValue(), imageStore.resolve(ImageStore.variantName(name, entry.getKey())),
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                stringRedisTemplate.opsForHash().put(IMAGE_VARIANTS_KEY, name, StrUtil.join(",", encoded.keySet()));
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            for (Path tmp : encoded.values()) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * 先读取图片头部获取尺寸, 再按采样间隔解码, 不把整张原图读入内存
+     * 采样后的宽度不小于最大缩略图宽度的两倍, 保证逐级缩小时的质量; 同时限制解码后的总像素数, 细长的图片也不会占用过多内存
+     *
+     * @return 采样后的图片, 无法识别或像素数超过上限时返回null
+     */
+    static BufferedImage readSubsampled(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                long pixels = (long) width * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    return null;
+                }
+                int maxVariantWidth = SystemConstants.IMAGE_VARIANT_WIDTHS[SystemConstants.IMAGE_VARIANT_WIDTHS.length - 1];
+                int step = Math.max(1, width / (maxVariantWidth * 2));
+                step = Math.max(step, (int) Math.ceil(Math.sqrt((double) pixels / MAX_DECODED_PIXELS)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按宽度等比缩放
+     * 每次缩小一半做双线性插值, 直到接近目标宽度, 比一次缩小到位的锯齿更少
+     *
+     * @param alpha 是否保留透明通道, 不保留时以白色填充背景(jpg不支持透明)
+     */
+    private static BufferedImage resize(BufferedImage image, int width, boolean alpha) {
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = w == width ? height : Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w > width);
+        return current;
+    }
+
+    private void onRejected() {
+        rejectedCounter.increment();
+        log.warn("缩略图队列已满, 丢弃任务");
+    }
+}
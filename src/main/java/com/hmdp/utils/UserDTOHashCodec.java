@@ -0,0 +1,55 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UserDTO与登录会话Hash之间的转换
+ */
+public class UserDTOHashCodec implements RedisHashCodec<UserDTO> {
+
+    public static final UserDTOHashCodec INSTANCE = new UserDTOHashCodec();
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_NICK_NAME = "nickName";
+    private static final String FIELD_ICON = "icon";
+
+    private UserDTOHashCodec() {
+    }
+
+    @Override
+    public Map<String, String> encode(UserDTO user) {
+        // 3个字段, 按负载因子取容量, 避免扩容
+        Map<String, String> hash = new HashMap<>(4);
+        if (user.getId() != null) {
+            hash.put(FIELD_ID, user.getId().toString());
+        }
+        if (user.getNickName() != null) {
+            hash.put(FIELD_NICK_NAME, user.getNickName());
+        }
+        if (user.getIcon() != null) {
+            hash.put(FIELD_ICON, user.getIcon());
+        }
+        return hash;
+    }
+
+    @Override
+    public UserDTO decode(Map<?, ?> hash) {
+        UserDTO user = new UserDTO();
+        Object id = hash.get(FIELD_ID);
+        if (id != null) {
+            user.setId(Long.valueOf(id.toString()));
+        }
+        Object nickName = hash.get(FIELD_NICK_NAME);
+        if (nickName != null) {
+            user.setNickName(nickName.toString());
+        }
+        Object icon = hash.get(FIELD_ICON);
+        if (icon != null) {
+            user.setIcon(icon.toString());
+        }
+        return user;
+    }
+}
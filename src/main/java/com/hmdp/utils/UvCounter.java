@@ -0,0 +1,177 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 独立访客(UV)统计
+ * 每个页面每天一个HyperLogLog, 无论访客多少最多占用12KB, 标准误差约0.81%;
+ * 访问记录先在本地去重缓冲, 由后台线程定期通过管道批量PFADD;
+ * 记录访问时持有读锁, 刷新时持有写锁替换缓冲, 替换后不会再有线程写入旧的缓冲, 访问记录不会丢失
+ */
+@Slf4j
+@Component
+public class UvCounter {
+
+    public static final String TYPE_SHOP = "shop";
+    public static final String TYPE_BLOG = "blog";
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+    // 缓冲刷新的间隔(毫秒)
+    private static final long FLUSH_INTERVAL = 1000L;
+    // 缓冲中的访问记录超过该数量时立即刷新, 避免占用过多内存
+    private static final int MAX_PENDING = 100000;
+    // 刷新跟不上写入、缓冲达到该数量时, 由写入的线程自己刷新, 对写入形成反压, 缓冲不再继续增长
+    private static final int MAX_BUFFERED = MAX_PENDING * 2;
+    // 统计的日期范围上限(天)
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ClientIpResolver clientIpResolver;
+
+    // key -> 访客, 刷新时整体替换
+    private volatile Map<String, Set<String>> buffer = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // 读锁: 写入缓冲; 写锁: 替换缓冲
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public UvCounter(StringRedisTemplate stringRedisTemplate, ClientIpResolver clientIpResolver) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.clientIpResolver = clientIpResolver;
+    }
+
+    @PostConstruct
+    private void init() {
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() throws InterruptedException {
+        flushExecutor.shutdown();
+        // 等待进行中的刷新完成, 再写入剩余的访问记录
+        flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * 记录一次访问, 登录用户按用户id去重, 否则按IP去重
+     *
+     * @param type    页面类型
+     * @param id      页面id
+     * @param request 请求
+     */
+    public void record(String type, Long id, HttpServletRequest request) {
+        UserDTO user = UserHolder.getUser();
+        String visitor = user != null ? "u" + user.getId() : clientIpResolver.getClientIp(request);
+        String key = uvKey(type, id, LocalDate.now());
+        int count = 0;
+        bufferLock.readLock().lock();
+        try {
+            if (buffer.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(visitor)) {
+                count = pending.incrementAndGet();
+            }
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        if (count >= MAX_BUFFERED) {
+            flush();
+        } else if (count == MAX_PENDING && !flushExecutor.isShutdown()) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 统计日期范围内的UV, 多天时合并后再计数, 同一访客只计一次
+     *
+     * @param type  页面类型
+     * @param id    页面id
+     * @param begin 开始日期(包含)
+     * @param end   结束日期(包含)
+     * @return UV, 日期范围无效时返回null
+     */
+    public Long count(String type, Long id, LocalDate begin, LocalDate end) {
+        if (end.isBefore(begin) || begin.plusDays(MAX_RANGE_DAYS).isBefore(end)) {
+            return null;
+        }
+        if (begin.equals(end)) {
+            return stringRedisTemplate.opsForHyperLogLog().size(uvKey(type, id, begin));
+        }
+        // 合并结果缓存一段时间, 同一范围的重复查询不必每次合并
+        String rangeKey = UV_KEY + type + ":" + id + ":" + begin.format(DAY_FORMATTER) + "-" + end.format(DAY_FORMATTER);
+        if (BooleanUtil.isFalse(stringRedisTemplate.hasKey(rangeKey))) {
+            List<String> keys = new ArrayList<>();
+            for (LocalDate day = begin; !day.isAfter(end); day = day.plusDays(1)) {
+                keys.add(uvKey(type, id, day));
+            }
+            stringRedisTemplate.opsForHyperLogLog().union(rangeKey, keys.toArray(new String[0]));
+            stringRedisTemplate.expire(rangeKey, UV_RANGE_TTL, TimeUnit.MINUTES);
+        }
+        return stringRedisTemplate.opsForHyperLogLog().size(rangeKey);
+    }
+
+    /**
+     * 通过一次管道写入缓冲中的全部访问记录
+     */
+    private void flush() {
+        Map<String, Set<String>> entries;
+        bufferLock.writeLock().lock();
+        try {
+            entries = buffer;
+            buffer = new ConcurrentHashMap<>();
+            pending.set(0);
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        long ttl = TimeUnit.DAYS.toSeconds(UV_TTL);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                entries.forEach((key, visitors) -> {
+                    byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                    // 替换后已没有线程写入, 仍以快照的长度为准
+                    String[] snapshot = visitors.toArray(new String[0]);
+                    byte[][] values = new byte[snapshot.length][];
+                    for (int i = 0; i < snapshot.length; i++) {
+                        values[i] = snapshot[i].getBytes(StandardCharsets.UTF_8);
+                    }
+                    connection.pfAdd(rawKey, values);
+                    connection.expire(rawKey, ttl);
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            // UV允许少量误差, 写入失败的记录直接丢弃
+            log.error("写入UV失败, 丢弃访问记录: {}", entries.size(), e);
+        }
+    }
+
+    private static String uvKey(String type, Long id, LocalDate day) {
+        return UV_KEY + type + ":" + id + ":" + day.format(DAY_FORMATTER);
+    }
+}
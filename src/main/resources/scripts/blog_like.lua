@@ -0,0 +1,45 @@
+-- 点赞/取消点赞
+-- KEYS[1] - 博文的点赞用户集合, ZSet结构, member为用户id, score为点赞时间
+-- KEYS[2] - 待同步到数据库的点赞数增量, Hash结构, field为博文id
+-- KEYS[3] - 热门博文排行, ZSet结构, member为博文id, score为热度
+-- ARGV[1] - 用户id
+-- ARGV[2] - 当前时间戳
+-- ARGV[3] - 博文id
+-- ARGV[4] - 热度计算的起始时间戳
+-- ARGV[5] - 热度的半衰期(毫秒)
+
+-- 热度 = ln(Σ e^(每次点赞的时间项)), 时间项随时间线性增长, 等价于旧的点赞按半衰期衰减,
+-- 以对数形式保存, 可以增量更新且不会溢出
+local function term(time)
+    return (tonumber(time) - tonumber(ARGV[4])) * 0.6931471805599453 / tonumber(ARGV[5])
+end
+
+-- 1. 已点赞, 取消点赞, 并从热度中减去这次点赞的时间项, 返回0
+local likedAt = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if (likedAt) then
+    redis.call('ZREM', KEYS[1], ARGV[1])
+    redis.call('HINCRBY', KEYS[2], ARGV[3], -1)
+    local score = redis.call('ZSCORE', KEYS[3], ARGV[3])
+    if (score) then
+        score = tonumber(score)
+        local remain = 1 - math.exp(term(likedAt) - score)
+        if (remain > 0) then
+            redis.call('ZADD', KEYS[3], score + math.log(remain), ARGV[3])
+        end
+    end
+    return 0
+end
+
+-- 2. 未点赞, 点赞, 并把这次点赞的时间项累加到热度中, 返回1
+redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+redis.call('HINCRBY', KEYS[2], ARGV[3], 1)
+local x = term(ARGV[2])
+local score = redis.call('ZSCORE', KEYS[3], ARGV[3])
+if (score) then
+    score = tonumber(score)
+    local high = math.max(score, x)
+    local low = math.min(score, x)
+    x = high + math.log(1 + math.exp(low - high))
+end
+redis.call('ZADD', KEYS[3], x, ARGV[3])
+return 1
@@ -0,0 +1,6 @@
+-- 原子地取出并清空Hash, 多个节点同时执行时每个增量只会被取走一次
+-- KEYS[1] - Hash的key
+
+local entries = redis.call('HGETALL', KEYS[1])
+redis.call('DEL', KEYS[1])
+return entries
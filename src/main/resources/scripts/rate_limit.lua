@@ -0,0 +1,33 @@
+-- 滑动窗口限流, 同一个接口的多条规则在一次调用中原子地检查
+-- KEYS[i]     - 第i条规则的key, ZSet结构, member为请求标识, score为请求时间
+-- ARGV[1]     - 本次请求的唯一标识
+-- ARGV[2i]    - 第i条规则的窗口大小(毫秒)
+-- ARGV[2i+1]  - 第i条规则窗口内允许的请求数
+-- 返回 {0, 0} 表示放行; 否则返回 {超限规则的序号, 需要等待的毫秒数}
+
+-- TIME是非确定性命令, Redis 5之前需要开启按效果复制, 之后才能执行写命令
+redis.replicate_commands()
+
+-- 使用Redis服务器时间, 避免多个应用节点之间的时钟偏差
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+-- 1. 先检查所有规则, 任意一条超限时不记录本次请求, 避免被拒绝的请求消耗其他规则的配额
+for i, key in ipairs(KEYS) do
+    local window = tonumber(ARGV[i * 2])
+    local limit = tonumber(ARGV[i * 2 + 1])
+    redis.call('ZREMRANGEBYSCORE', key, 0, now - window)
+    if (redis.call('ZCARD', key) >= limit) then
+        -- 返回最早的请求移出窗口还需等待的毫秒数
+        local oldest = redis.call('ZRANGE', key, 0, 0, 'WITHSCORES')
+        local wait = oldest[2] and (tonumber(oldest[2]) + window - now) or window
+        return {i, math.max(1, wait)}
+    end
+end
+
+-- 2. 全部通过, 在每条规则的窗口中记录本次请求
+for i, key in ipairs(KEYS) do
+    redis.call('ZADD', key, now, ARGV[1])
+    redis.call('PEXPIRE', key, tonumber(ARGV[i * 2]))
+end
+return {0, 0}
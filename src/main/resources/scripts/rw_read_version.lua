@@ -0,0 +1,15 @@
+-- KEYS[1] - 写锁的key
+-- KEYS[2] - 版本号的key
+
+-- 读取方不持有锁, 只记录重建开始时的版本号; 写入缓存前再比较版本号, 写者不需要等待读取方
+-- 写锁被占用, 说明正在更新, 不应重建缓存
+if (redis.call('exists', KEYS[1]) == 1) then
+    return -1
+end
+
+-- 返回当前版本号, 作为本次缓存重建的版本戳
+local version = redis.call('get', KEYS[2])
+if (not version) then
+    return 0
+end
+return tonumber(version)
@@ -0,0 +1,14 @@
+-- KEYS[1] - 缓存的key
+-- KEYS[2] - 写锁的key
+-- KEYS[3] - 版本号的key
+-- ARGV[1] - 重建开始时读取的版本号
+-- ARGV[2] - 缓存的值
+-- ARGV[3] - 缓存的过期时间(毫秒)
+
+-- 写锁空闲且版本号未变化, 说明重建期间没有发生更新, 才写入缓存
+local version = redis.call('get', KEYS[3]) or '0'
+if (redis.call('exists', KEYS[2]) == 0 and version == ARGV[1]) then
+    redis.call('set', KEYS[1], ARGV[2], 'PX', ARGV[3])
+    return 1
+end
+return 0
@@ -0,0 +1,11 @@
+-- KEYS[1] - 写锁的key
+-- KEYS[2] - 版本号的key
+-- ARGV[1] - 持有者标识
+-- ARGV[2] - 锁的过期时间(毫秒)
+
+-- 写锁互斥, 获取成功后递增版本号
+-- 版本号递增之后, 所有在此之前开始的缓存重建都会被丢弃
+if (redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2])) then
+    return redis.call('incr', KEYS[2])
+end
+return -1
@@ -0,0 +1,64 @@
+package com.hmdp.dto;
+
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存命中时生成/shop/{id}响应体的开销: 解析缓存中的JSON再序列化Result.ok(shop), 与RawJson原样输出对比
+ * parseHutool为改动前queryWithVersion的做法, parseJackson用MVC的ObjectMapper解析
+ * 不随单元测试执行, 运行main方法, 或在IDE中直接运行; 加上 -prof gc 可查看每次的内存分配
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private String json;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = RawJsonTest.mvcObjectMapper();
+        json = objectMapper.writeValueAsString(RawJsonTest.shop());
+    }
+
+    @Benchmark
+    public byte[] parseHutool() throws Exception {
+        return objectMapper.writeValueAsBytes(Result.ok(JSONUtil.toBean(json, Shop.class)));
+    }
+
+    @Benchmark
+    public byte[] parseJackson() throws Exception {
+        return objectMapper.writeValueAsBytes(Result.ok(objectMapper.readValue(json, Shop.class)));
+    }
+
+    @Benchmark
+    public byte[] raw() throws Exception {
+        return objectMapper.writeValueAsBytes(Result.ok(new RawJson(json)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RawJsonBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,54 @@
+package com.hmdp.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawJsonTest {
+
+    @Test
+    void serializesSameBytesAsEntity() throws Exception {
+        ObjectMapper objectMapper = mvcObjectMapper();
+        Shop full = shop();
+        // 空字段按non_null配置省略, 查询时才计算的距离不在缓存中
+        Shop sparse = new Shop().setId(2L).setName("\"引号\"与\\反斜杠\n换行").setTypeId(1L);
+        for (Shop shop : new Shop[]{full, sparse}) {
+            // 与CacheClient写入缓存的JSON相同
+            String json = objectMapper.writeValueAsString(shop);
+            assertArrayEquals(objectMapper.writeValueAsBytes(Result.ok(shop)),
+                    objectMapper.writeValueAsBytes(Result.ok(new RawJson(json))));
+        }
+        assertEquals("{\"success\":true,\"data\":{\"id\":2}}",
+                objectMapper.writeValueAsString(Result.ok(new RawJson("{\"id\":2}"))));
+    }
+
+    static Shop shop() {
+        return new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关").setAddress("金华路锦昌文华苑29号").setX(120.149192).setY(30.316078)
+                .setAvgPrice(80L).setSold(4215).setComments(3035).setScore(37).setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+
+    /**
+     * 按application.yaml中的spring.jackson配置, 由Spring Boot创建与MVC相同的ObjectMapper
+     */
+    static ObjectMapper mvcObjectMapper() {
+        AtomicReference<ObjectMapper> objectMapper = new AtomicReference<>();
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+                .withPropertyValues("spring.jackson.default-property-inclusion=non_null")
+                .run(context -> objectMapper.set(context.getBean(ObjectMapper.class)));
+        return objectMapper.get();
+    }
+}
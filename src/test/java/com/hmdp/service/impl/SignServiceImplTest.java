@@ -0,0 +1,102 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.entity.Sign;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SignServiceImplTest {
+
+    private final Map<YearMonth, Long> months = new HashMap<>();
+
+    @Test
+    void streakWithinMonth() {
+        sign(2026, 3, 1, 2, 5, 6, 7);
+        assertEquals(3, streak(2026, 3, 7));
+        // 今天尚未签到, 从昨天开始统计
+        assertEquals(3, streak(2026, 3, 8));
+        // 昨天也没有签到
+        assertEquals(0, streak(2026, 3, 9));
+        assertEquals(2, streak(2026, 3, 2));
+    }
+
+    @Test
+    void streakContinuesIntoPreviousMonths() {
+        // 1月最后两天, 2月整月(28天), 3月前3天
+        sign(2026, 1, 30, 31);
+        for (int day = 1; day <= 28; day++) {
+            sign(2026, 2, day);
+        }
+        sign(2026, 3, 1, 2, 3);
+        assertEquals(33, streak(2026, 3, 3));
+        // 3月1日尚未签到时从2月28日开始
+        months.remove(YearMonth.of(2026, 3));
+        assertEquals(30, streak(2026, 3, 1));
+    }
+
+    @Test
+    void streakAcrossYearAndOnDay31() {
+        sign(2025, 12, 31);
+        sign(2026, 1, 1);
+        assertEquals(2, streak(2026, 1, 1));
+
+        for (int day = 1; day <= 31; day++) {
+            sign(2026, 5, day);
+        }
+        assertEquals(31, streak(2026, 5, 31));
+    }
+
+    @Test
+    void streakWithoutAnySign() {
+        assertEquals(0, streak(2026, 3, 1));
+        assertEquals(0, streak(2026, 3, 31));
+    }
+
+    @Test
+    void isSignedReadsDayBit() {
+        long bits = bits(1, 31);
+        assertTrue(SignServiceImpl.isSigned(bits, 1));
+        assertTrue(SignServiceImpl.isSigned(bits, 31));
+        assertFalse(SignServiceImpl.isSigned(bits, 2));
+        assertFalse(SignServiceImpl.isSigned(bits, 0));
+    }
+
+    @Test
+    void parseKey() {
+        Sign sign = SignServiceImpl.parseKey("sign:1010:202603");
+        assertEquals(1010L, sign.getUserId());
+        assertEquals(2026, sign.getYear());
+        assertEquals(3, sign.getMonth());
+        assertNull(SignServiceImpl.parseKey("sign:1010"));
+        assertNull(SignServiceImpl.parseKey("sign:abc:202603"));
+        assertNull(SignServiceImpl.parseKey("sign:1010:2026-03"));
+    }
+
+    private int streak(int year, int month, int day) {
+        return SignServiceImpl.countStreak(LocalDate.of(year, month, day),
+                m -> months.getOrDefault(m, 0L));
+    }
+
+    private void sign(int year, int month, int... days) {
+        months.merge(YearMonth.of(year, month), bits(days), (a, b) -> a | b);
+    }
+
+    /**
+     * 与Redis位图一致: 第d天对应BITFIELD GET u32 0结果的第(32 - d)位
+     */
+    private static long bits(int... days) {
+        long bits = 0;
+        for (int day : days) {
+            bits |= 1L << (32 - day);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageServerTest {
+
+    private static final String DIGEST = "ab" + "cd" + repeat('e', 60);
+    private static final String IMAGE = "/blogs/ab/cd/" + DIGEST + ".png";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void parseRange() {
+        assertArrayEquals(new long[]{0, 99}, ImageServer.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{100, 999}, ImageServer.parseRange("bytes=100-", 1000));
+        // 结束位置超过长度时截断
+        assertArrayEquals(new long[]{900, 999}, ImageServer.parseRange("bytes=900-5000", 1000));
+        // 最后n个字节, n超过长度时返回全部
+        assertArrayEquals(new long[]{990, 999}, ImageServer.parseRange("bytes=-10", 1000));
+        assertArrayEquals(new long[]{0, 999}, ImageServer.parseRange("bytes=-5000", 1000));
+        assertArrayEquals(new long[]{5, 5}, ImageServer.parseRange(" bytes=5-5 ", 1000));
+
+        // 无法满足
+        assertNull(ImageServer.parseRange("bytes=1000-", 1000));
+        assertNull(ImageServer.parseRange("bytes=10-5", 1000));
+        assertNull(ImageServer.parseRange("bytes=-0", 1000));
+        assertNull(ImageServer.parseRange("bytes=0-", 0));
+
+        // 不支持的格式按完整内容处理
+        assertEquals(0, ImageServer.parseRange("bytes=0-1,5-6", 1000).length);
+        assertEquals(0, ImageServer.parseRange("bytes=-", 1000).length);
+        assertEquals(0, ImageServer.parseRange("items=0-1", 1000).length);
+        assertEquals(0, ImageServer.parseRange("bytes=99999999999999999999-", 1000).length);
+    }
+
+    @Test
+    void isSafeImage() {
+        assertTrue(ImageServer.isSafeImage(MediaType.IMAGE_PNG));
+        assertTrue(ImageServer.isSafeImage(MediaType.IMAGE_JPEG));
+        assertTrue(ImageServer.isSafeImage(MediaType.parseMediaType("image/webp")));
+        assertFalse(ImageServer.isSafeImage(MediaType.parseMediaType("image/svg+xml")));
+        assertFalse(ImageServer.isSafeImage(MediaType.TEXT_HTML));
+        assertFalse(ImageServer.isSafeImage(null));
+    }
+
+    @Test
+    void servesImageWithNosniffAndRange() throws Exception {
+        ImageServer server = server();
+        write(IMAGE, "0123456789");
+
+        MockHttpServletResponse response = serve(server, IMAGE, "bytes=2-4");
+        assertEquals(206, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+        assertNull(response.getHeader("Content-Disposition"));
+        assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+        assertEquals("234", response.getContentAsString());
+    }
+
+    @Test
+    void servesOtherFilesAsAttachment() throws Exception {
+        ImageServer server = server();
+        String page = "/blogs/1/2/" + "0123abcd-0123-0123-0123-0123456789ab" + ".html";
+        write(page, "<script>alert(1)</script>");
+
+        MockHttpServletResponse response = serve(server, page, null);
+        assertEquals(200, response.getStatus());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, response.getContentType());
+        assertEquals("attachment", response.getHeader("Content-Disposition"));
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+    }
+
+    private ImageServer server() {
+        ImageServer server = new ImageServer();
+        ReflectionTestUtils.setField(server, "imageStore", new ImageStore(root.toString()));
+        return server;
+    }
+
+    private void write(String name, String content) throws Exception {
+        Path path = root.resolve(name.substring(1));
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletResponse serve(ImageServer server, String name, String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imgs" + name);
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(name, request, response);
+        return response;
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * 每个请求的登录校验开销: 签名令牌与Redis会话两种模式对比
+ * signedVerify为签名令牌模式; sessionLocalHit为Redis会话模式命中本地缓存; sessionDecode只去掉网络往返,
+ * 每次都走HGETALL结果的解码路径; sessionRedis每次都通过一次管道执行HGETALL与PTTL, 即本地缓存未命中时的开销
+ * <p>
+ * sessionRedis需要可用的Redis, 默认127.0.0.1:6379, 可通过 -Dhmdp.bench.redis=host:port 指定, 会写入并在结束时删除一个会话;
+ * 其余几项不连接Redis. 不随单元测试执行, 运行main方法, 或在IDE中直接运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginTokenBenchmark {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+    private static final String SESSION_TOKEN = "bench-5f0c7a1e9b2d4c3f8a6e";
+
+    @State(Scope.Thread)
+    public static class Local {
+        private SignedTokenService signedTokenService;
+        private String signedToken;
+        private LoginSessionCache loginSessionCache;
+        private MockHttpServletResponse response;
+
+        @Setup
+        public void setup() {
+            signedTokenService = new SignedTokenService(null, SignedTokenService.TOKEN_MODE_SIGNED, SECRET);
+            signedToken = signedTokenService.create(user());
+            // 返回固定会话的管道, 不访问Redis
+            List<Object> results = Arrays.asList(UserDTOHashCodec.INSTANCE.encode(user()),
+                    TimeUnit.SECONDS.toMillis(LOGIN_USER_TTL));
+            loginSessionCache = new LoginSessionCache(new StringRedisTemplate() {
+                @Override
+                public List<Object> executePipelined(RedisCallback<?> action) {
+                    return results;
+                }
+            });
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Redis {
+        private LettuceConnectionFactory factory;
+        private StringRedisTemplate template;
+        private LoginSessionCache loginSessionCache;
+
+        @Setup
+        public void setup() {
+            String[] address = System.getProperty("hmdp.bench.redis", "127.0.0.1:6379").split(":");
+            factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(address[0], Integer.parseInt(address[1])));
+            factory.afterPropertiesSet();
+            template = new StringRedisTemplate(factory);
+            template.afterPropertiesSet();
+            // 与UserServiceImpl登录时写入的会话相同
+            Map<String, String> hash = UserDTOHashCodec.INSTANCE.encode(user());
+            template.opsForHash().putAll(LOGIN_USER_KEY + SESSION_TOKEN, hash);
+            template.expire(LOGIN_USER_KEY + SESSION_TOKEN, LOGIN_USER_TTL, TimeUnit.SECONDS);
+            loginSessionCache = new LoginSessionCache(template);
+        }
+
+        @TearDown
+        public void tearDown() {
+            template.delete(LOGIN_USER_KEY + SESSION_TOKEN);
+            factory.destroy();
+        }
+    }
+
+    @Benchmark
+    public UserDTO signedVerify(Local local) {
+        return local.signedTokenService.verify(local.signedToken, local.response);
+    }
+
+    @Benchmark
+    public UserDTO sessionLocalHit(Local local) {
+        return local.loginSessionCache.get(SESSION_TOKEN);
+    }
+
+    @Benchmark
+    public UserDTO sessionDecode(Local local) {
+        local.loginSessionCache.evict(SESSION_TOKEN);
+        return local.loginSessionCache.get(SESSION_TOKEN);
+    }
+
+    @Benchmark
+    public UserDTO sessionRedis(Redis redis) {
+        redis.loginSessionCache.evict(SESSION_TOKEN);
+        return redis.loginSessionCache.get(SESSION_TOKEN);
+    }
+
+    private static UserDTO user() {
+        UserDTO user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("user_ab12cd34ef");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginTokenBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 附近商铺查询: 本地网格索引与逐个计算距离的线性扫描对比, 不需要Redis
+ * 半径查询的参数与queryNearbyShops一致: 5公里半径, 取第一页; 最近邻查询取最近的一页
+ * 与Redis GEO的对比见 {@link ShopGeoRedisBenchmark}
+ * 不随单元测试执行, 运行main方法, 或在IDE中直接运行
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopGeoIndexBenchmark {
+
+    // 同一类型的商铺数量, 分布在约50公里见方的城市范围内
+    @Param({"10000", "100000"})
+    private int shops;
+
+    private ShopGeoIndex index;
+    private double[] xs;
+    private double[] ys;
+    private double[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        xs = new double[shops];
+        ys = new double[shops];
+        for (int i = 0; i < shops; i++) {
+            xs[i] = 120.15 + (random.nextDouble() - 0.5) * 0.5;
+            ys[i] = 30.27 + (random.nextDouble() - 0.5) * 0.5;
+            index.put(new Shop().setId(i + 1L).setTypeId(1L).setX(xs[i]).setY(ys[i]));
+        }
+        queries = new double[1024][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new double[]{120.15 + (random.nextDouble() - 0.5) * 0.5, 30.27 + (random.nextDouble() - 0.5) * 0.5};
+        }
+    }
+
+    @Benchmark
+    public List<ShopGeoIndex.Hit> grid() {
+        double[] q = queries[next++ & (queries.length - 1)];
+        return index.radius(1L, q[0], q[1], SystemConstants.NEARBY_SHOP_RADIUS, SystemConstants.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public long[] linearScan() {
+        double[] q = queries[next++ & (queries.length - 1)];
+        long[] hits = new long[16];
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double distance = ShopGeoIndexTest.haversine(q[0], q[1], xs[i], ys[i]);
+            if (distance <= SystemConstants.NEARBY_SHOP_RADIUS) {
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, count * 2);
+                }
+                hits[count++] = (Math.round(distance * 100) << 32) | i;
+            }
+        }
+        Arrays.sort(hits, 0, count);
+        return Arrays.copyOf(hits, Math.min(count, SystemConstants.DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<ShopGeoIndex.Hit> gridNearest() {
+        double[] q = queries[next++ & (queries.length - 1)];
+        return index.nearest(1L, q[0], q[1], SystemConstants.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public long[] linearNearest() {
+        double[] q = queries[next++ & (queries.length - 1)];
+        long[] hits = new long[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            hits[i] = (Math.round(ShopGeoIndexTest.haversine(q[0], q[1], xs[i], ys[i]) * 100) << 32) | i;
+        }
+        Arrays.sort(hits);
+        return Arrays.copyOf(hits, SystemConstants.DEFAULT_PAGE_SIZE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShopGeoIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,157 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShopGeoIndexTest {
+
+    @Test
+    void radiusMatchesLinearScan() {
+        ShopGeoIndex index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        Random random = new Random(42);
+        List<Shop> shops = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            // 杭州市区附近约50公里的范围, 两种类型
+            Shop shop = shop(id, 1 + id % 2, 120.15 + (random.nextDouble() - 0.5) * 0.5, 30.27 + (random.nextDouble() - 0.5) * 0.5);
+            shops.add(shop);
+            index.put(shop);
+        }
+        for (int i = 0; i < 50; i++) {
+            double x = 120.15 + (random.nextDouble() - 0.5) * 0.5;
+            double y = 30.27 + (random.nextDouble() - 0.5) * 0.5;
+            List<Long> expected = shops.stream()
+                    .filter(shop -> shop.getTypeId() == 1L)
+                    .filter(shop -> haversine(x, y, shop.getX(), shop.getY()) <= 5000)
+                    .sorted(Comparator.comparingDouble(shop -> haversine(x, y, shop.getX(), shop.getY())))
+                    .limit(20)
+                    .map(Shop::getId)
+                    .collect(Collectors.toList());
+            List<ShopGeoIndex.Hit> hits = index.radius(1L, x, y, 5000, 20);
+            assertEquals(expected, hits.stream().map(ShopGeoIndex.Hit::getId).collect(Collectors.toList()));
+            for (ShopGeoIndex.Hit hit : hits) {
+                Shop shop = shops.get(hit.getId().intValue() - 1);
+                assertEquals(haversine(x, y, shop.getX(), shop.getY()), hit.getDistance(), 0.01);
+            }
+        }
+    }
+
+    @Test
+    void radiusAcrossAntimeridian() {
+        ShopGeoIndex index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        index.put(shop(1L, 1L, 179.999, 0.0));
+        index.put(shop(2L, 1L, -179.999, 0.0));
+        List<ShopGeoIndex.Hit> hits = index.radius(1L, 180, 0, 1000, 10);
+        assertEquals(2, hits.size());
+    }
+
+    @Test
+    void nearestMatchesLinearScan() {
+        ShopGeoIndex index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        Random random = new Random(7);
+        List<Shop> shops = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            // 类型1集中在市区, 类型2稀疏分布在约5度见方的范围, 需要扫描多圈
+            double spread = id % 2 == 1 ? 0.5 : 5;
+            Shop shop = shop(id, 2 - id % 2, 120.15 + (random.nextDouble() - 0.5) * spread, 30.27 + (random.nextDouble() - 0.5) * spread);
+            shops.add(shop);
+            index.put(shop);
+        }
+        for (long typeId = 1; typeId <= 2; typeId++) {
+            for (int i = 0; i < 50; i++) {
+                double x = 120.15 + (random.nextDouble() - 0.5) * 6;
+                double y = 30.27 + (random.nextDouble() - 0.5) * 6;
+                int k = 1 + random.nextInt(30);
+                assertEquals(linearNearest(shops, typeId, x, y, k), ids(index.nearest(typeId, x, y, k)));
+            }
+        }
+    }
+
+    @Test
+    void nearestFallsBackToFullScan() {
+        ShopGeoIndex index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        List<Shop> shops = new ArrayList<>();
+        // 相距很远的商铺, 超过最大扫描圈数; 以及靠近两极的商铺
+        shops.add(shop(1L, 1L, 120.15, 30.27));
+        shops.add(shop(2L, 1L, -73.98, 40.75));
+        shops.add(shop(3L, 1L, 0.0, 89.999));
+        shops.add(shop(4L, 1L, 179.999, -89.999));
+        shops.add(shop(5L, 1L, -179.999, 0.0));
+        shops.forEach(index::put);
+        double[][] queries = {{2.35, 48.85}, {-120, 89.99}, {0, -89.99}, {179.999, 0}, {120.15, 30.27}};
+        for (double[] q : queries) {
+            for (int k = 1; k <= 6; k++) {
+                assertEquals(linearNearest(shops, 1L, q[0], q[1], k), ids(index.nearest(1L, q[0], q[1], k)));
+            }
+        }
+        assertTrue(index.nearest(2L, 0, 0, 3).isEmpty());
+        assertTrue(index.nearest(1L, 0, 0, 0).isEmpty());
+    }
+
+    @Test
+    void putMovesAndRemovesShop() {
+        ShopGeoIndex index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+        index.put(shop(1L, 1L, 120.15, 30.27));
+        assertEquals(1, index.radius(1L, 120.15, 30.27, 100, 10).size());
+
+        // 修改类型与坐标后从原位置移除
+        index.put(shop(1L, 2L, 121.47, 31.23));
+        assertTrue(index.radius(1L, 120.15, 30.27, 100, 10).isEmpty());
+        assertEquals(1, index.radius(2L, 121.47, 31.23, 100, 10).size());
+
+        // 坐标被清空后不再出现在结果中
+        index.put(shop(1L, 2L, null, null));
+        assertTrue(index.radius(2L, 121.47, 31.23, 100, 10).isEmpty());
+        assertEquals(0, index.indexedIds().length);
+
+        index.put(shop(2L, 1L, 120.15, 30.27));
+        index.remove(2);
+        assertTrue(index.radius(1L, 120.15, 30.27, 100, 10).isEmpty());
+    }
+
+    @Test
+    void disabledIndexIgnoresPut() {
+        ShopGeoIndex index = new ShopGeoIndex("redis");
+        index.put(shop(1L, 1L, 120.15, 30.27));
+        assertEquals(0, index.indexedIds().length);
+        assertEquals(Collections.emptyList(), index.radius(1L, 120.15, 30.27, 100, 10));
+    }
+
+    private static List<Long> linearNearest(List<Shop> shops, long typeId, double x, double y, int k) {
+        return shops.stream()
+                .filter(shop -> shop.getTypeId() == typeId)
+                .sorted(Comparator.<Shop>comparingDouble(shop -> Math.round(haversine(x, y, shop.getX(), shop.getY()) * 100))
+                        .thenComparing(Shop::getId))
+                .limit(k)
+                .map(Shop::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<ShopGeoIndex.Hit> hits) {
+        return hits.stream().map(ShopGeoIndex.Hit::getId).collect(Collectors.toList());
+    }
+
+    private static Shop shop(Long id, Long typeId, Double x, Double y) {
+        return new Shop().setId(id).setTypeId(typeId).setX(x).setY(y);
+    }
+
+    /**
+     * 与Redis GEO一致的半正矢公式
+     */
+    static double haversine(double lon1, double lat1, double lon2, double lat2) {
+        double lat1r = Math.toRadians(lat1);
+        double lat2r = Math.toRadians(lat2);
+        double u = Math.sin((lat2r - lat1r) / 2);
+        double v = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        return 2 * 6372797.560856 * Math.asin(Math.sqrt(u * u + Math.cos(lat1r) * Math.cos(lat2r) * v * v));
+    }
+}
@@ -0,0 +1,150 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 附近商铺查询: 100万商铺时本地网格索引与Redis GEO对比
+ * 商铺分布在约500公里见方的范围内, 查询参数与queryNearbyShops一致: 5公里半径, 取第一页;
+ * redisGeoRadius与线上代码相同, 通过StringRedisTemplate调用GEORADIUS, redisGeoSearch直接发送GEOSEARCH, 需要Redis 6.2
+ * <p>
+ * 需要可用的Redis, 默认127.0.0.1:6379, 可通过 -Dhmdp.bench.redis=host:port 指定; 会写入 bench:geo:1 并在结束时删除;
+ * 只运行grid时不连接Redis. 不随单元测试执行, 运行main方法, 或在IDE中直接运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopGeoRedisBenchmark {
+
+    private static final String KEY = "bench:geo:1";
+
+    @State(Scope.Benchmark)
+    public static class Shops {
+        @Param({"1000000"})
+        private int shops;
+
+        private ShopGeoIndex index;
+        private double[] xs;
+        private double[] ys;
+        private double[][] queries;
+        private int next;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            index = new ShopGeoIndex(ShopGeoIndex.NEARBY_MODE_LOCAL);
+            xs = new double[shops];
+            ys = new double[shops];
+            for (int i = 0; i < shops; i++) {
+                xs[i] = 120.15 + (random.nextDouble() - 0.5) * 5;
+                ys[i] = 30.27 + (random.nextDouble() - 0.5) * 5;
+                index.put(new Shop().setId(i + 1L).setTypeId(1L).setX(xs[i]).setY(ys[i]));
+            }
+            queries = new double[1024][];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = new double[]{120.15 + (random.nextDouble() - 0.5) * 5, 30.27 + (random.nextDouble() - 0.5) * 5};
+            }
+        }
+
+        private double[] nextQuery() {
+            return queries[next++ & (queries.length - 1)];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Redis {
+        private LettuceConnectionFactory factory;
+        private StringRedisTemplate template;
+
+        @Setup
+        public void setup(Shops shops) {
+            String[] address = System.getProperty("hmdp.bench.redis", "127.0.0.1:6379").split(":");
+            factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(address[0], Integer.parseInt(address[1])));
+            factory.afterPropertiesSet();
+            template = new StringRedisTemplate(factory);
+            template.afterPropertiesSet();
+            // 与loadShopGeo相同, 每批一条GEOADD
+            template.delete(KEY);
+            Map<String, Point> batch = new HashMap<>();
+            for (int i = 0; i < shops.xs.length; i++) {
+                batch.put(String.valueOf(i + 1), new Point(shops.xs[i], shops.ys[i]));
+                if (batch.size() == 10000 || i == shops.xs.length - 1) {
+                    template.opsForGeo().add(KEY, batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            template.delete(KEY);
+            factory.destroy();
+        }
+    }
+
+    @Benchmark
+    public List<ShopGeoIndex.Hit> grid(Shops shops) {
+        double[] q = shops.nextQuery();
+        return shops.index.radius(1L, q[0], q[1], SystemConstants.NEARBY_SHOP_RADIUS, SystemConstants.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public GeoResults<RedisGeoCommands.GeoLocation<String>> redisGeoRadius(Shops shops, Redis redis) {
+        double[] q = shops.nextQuery();
+        return redis.template.opsForGeo().radius(KEY,
+                new Circle(new Point(q[0], q[1]), new Distance(SystemConstants.NEARBY_SHOP_RADIUS)),
+                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().includeDistance().sortAscending()
+                        .limit(SystemConstants.DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Object redisGeoSearch(Shops shops, Redis redis) {
+        double[] q = shops.nextQuery();
+        return redis.template.execute((RedisCallback<Object>) connection -> connection.execute("GEOSEARCH",
+                bytes(KEY), bytes("FROMLONLAT"), bytes(q[0]), bytes(q[1]),
+                bytes("BYRADIUS"), bytes(SystemConstants.NEARBY_SHOP_RADIUS), bytes("m"),
+                bytes("ASC"), bytes("COUNT"), bytes(SystemConstants.DEFAULT_PAGE_SIZE), bytes("WITHDIST")));
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShopGeoRedisBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
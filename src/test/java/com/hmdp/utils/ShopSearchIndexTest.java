@@ -0,0 +1,79 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShopSearchIndexTest {
+
+    @Test
+    void searchRanksByTier() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.put(shop(1L, "海底捞火锅", "大关"));
+        index.put(shop(2L, "火锅", "拱宸桥"));
+        index.put(shop(3L, "小龙坎火锅店", "运河"));
+        index.put(shop(4L, "茶颜悦色", "火锅街"));
+        index.put(shop(5L, "火锅先生", "西湖"));
+
+        // 名称完全相同 > 名称前缀 > 名称包含(名称短的在前) > 仅商圈包含
+        assertEquals(Arrays.asList(2L, 5L, 1L, 3L, 4L), index.search("火锅", 0, 10));
+        assertEquals(Arrays.asList(1L, 3L), index.search("火锅", 2, 2));
+        // 忽略空白与大小写
+        index.put(shop(6L, "KFC 肯德基", "大关"));
+        assertEquals(Collections.singletonList(6L), index.search("kfc肯", 0, 10));
+        // 单字查询
+        assertEquals(Arrays.asList(3L), index.search("龙", 0, 10));
+        // 词项都命中但原文不连续
+        assertTrue(index.search("锅火", 0, 10).isEmpty());
+    }
+
+    @Test
+    void putReplacesOldTermsAndRemoveDropsShop() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        index.put(shop(1L, "老张烧烤", "大关"));
+        index.put(shop(1L, "老王面馆", "大关"));
+        assertTrue(index.search("烧烤", 0, 10).isEmpty());
+        assertEquals(Collections.singletonList(1L), index.search("面馆", 0, 10));
+
+        index.remove(1);
+        assertTrue(index.search("面馆", 0, 10).isEmpty());
+        assertTrue(index.search("大关", 0, 10).isEmpty());
+        assertEquals(0, index.indexedIds().length);
+    }
+
+    @Test
+    void reconcileRemovesDeletedShops() {
+        ShopSearchIndex index = new ShopSearchIndex();
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        ReflectionTestUtils.setField(index, "shopMapper", shopMapper);
+        // 1. 建立索引: 一批数据后返回空表示读取完毕
+        when(shopMapper.selectList(any())).thenReturn(
+                Arrays.asList(shop(1L, "一号店", "大关"), shop(2L, "二号店", "大关"), shop(3L, "三号店", "大关")),
+                Collections.emptyList());
+        index.sync();
+        assertTrue(index.isReady());
+        assertEquals(Arrays.asList(1L, 2L, 3L), index.search("号店", 0, 10));
+
+        // 2. 对账: 数据库中只剩1和3
+        when(shopMapper.selectList(any())).thenReturn(
+                Arrays.asList(new Shop().setId(1L), new Shop().setId(3L)),
+                Collections.emptyList());
+        index.reconcile();
+        assertEquals(Arrays.asList(1L, 3L), index.search("号店", 0, 10));
+    }
+
+    private static Shop shop(Long id, String name, String area) {
+        return new Shop().setId(id).setName(name).setArea(area).setUpdateTime(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,188 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_DENYLIST_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_REFRESH_THRESHOLD;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SignedTokenServiceTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private StringRedisTemplate stringRedisTemplate;
+    private ZSetOperations<String, String> zSetOperations;
+    private SignedTokenService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        zSetOperations = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        service = new SignedTokenService(stringRedisTemplate, SignedTokenService.TOKEN_MODE_SIGNED, SECRET);
+    }
+
+    @Test
+    void createThenVerify() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        UserDTO user = service.verify(service.create(user(1010L, "小鱼同学", null)), response);
+        assertNotNull(user);
+        assertEquals(1010L, user.getId());
+        assertEquals("小鱼同学", user.getNickName());
+        assertNull(user.getIcon());
+        // 刚签发的令牌不续期
+        assertNull(response.getHeader(SignedTokenService.RENEWED_TOKEN_HEADER));
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        String token = service.create(user(1010L, "小鱼同学", "/imgs/icons/a.jpg"));
+        int dot = token.lastIndexOf('.');
+        // 1. 篡改签名
+        String signature = token.substring(dot + 1);
+        String forged = token.substring(0, dot + 1) + (signature.charAt(0) == 'A' ? 'B' : 'A') + signature.substring(1);
+        assertNull(service.verify(forged, new MockHttpServletResponse()));
+        // 2. 替换为其他用户的载荷, 沿用原签名
+        String admin = token(7L, System.currentTimeMillis() + 60000, 1L, SECRET);
+        assertNull(service.verify(admin.substring(0, admin.lastIndexOf('.')) + token.substring(dot), new MockHttpServletResponse()));
+        // 3. 其他密钥签发的令牌
+        assertNull(service.verify(token(7L, System.currentTimeMillis() + 60000, 1L, SECRET + "x"), new MockHttpServletResponse()));
+        // 4. 格式错误
+        assertNull(service.verify("not-a-token", new MockHttpServletResponse()));
+        assertNull(service.verify("!!!.???", new MockHttpServletResponse()));
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        assertNull(service.verify(token(7L, System.currentTimeMillis() - 1, 1010L, SECRET), new MockHttpServletResponse()));
+        assertNotNull(service.verify(token(7L, System.currentTimeMillis() + 60000, 1010L, SECRET), new MockHttpServletResponse()));
+    }
+
+    @Test
+    void renewsTokenBelowThreshold() {
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOGIN_USER_REFRESH_THRESHOLD) - 60000;
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNotNull(service.verify(token(7L, expireAt, 1010L, SECRET), response));
+
+        // 续期后的令牌有效, 有效期重新计算, 沿用原会话id
+        String renewed = response.getHeader(SignedTokenService.RENEWED_TOKEN_HEADER);
+        assertNotNull(renewed);
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        UserDTO user = service.verify(renewed, next);
+        assertNotNull(user);
+        assertEquals(1010L, user.getId());
+        assertNull(next.getHeader(SignedTokenService.RENEWED_TOKEN_HEADER));
+
+        // 注销原令牌后, 续期的令牌同样失效
+        service.revoke(token(7L, expireAt, 1010L, SECRET));
+        assertNull(service.verify(renewed, new MockHttpServletResponse()));
+    }
+
+    @Test
+    void revokeAddsSessionToDenylist() {
+        String token = service.create(user(1010L, "小鱼同学", null));
+        String other = service.create(user(1011L, "小李同学", null));
+        service.revoke(token);
+
+        // 1. 本节点立即生效, 其他会话不受影响
+        assertNull(service.verify(token, new MockHttpServletResponse()));
+        assertNotNull(service.verify(other, new MockHttpServletResponse()));
+        String sessionId = String.valueOf(sessionId(token));
+        verify(zSetOperations).add(eq(LOGIN_DENYLIST_KEY), eq(sessionId), anyDouble());
+
+        // 2. 其他节点同步黑名单后生效
+        SignedTokenService node = new SignedTokenService(stringRedisTemplate, SignedTokenService.TOKEN_MODE_SIGNED, SECRET);
+        assertNotNull(node.verify(token, new MockHttpServletResponse()));
+        when(zSetOperations.rangeByScoreWithScores(eq(LOGIN_DENYLIST_KEY), anyDouble(), anyDouble()))
+                .thenReturn(Collections.singleton(new DefaultTypedTuple<>(sessionId, (double) System.currentTimeMillis())));
+        ReflectionTestUtils.invokeMethod(node, "syncDenylist");
+        assertNull(node.verify(token, new MockHttpServletResponse()));
+        assertNotNull(node.verify(other, new MockHttpServletResponse()));
+    }
+
+    @Test
+    void revokeIgnoresForgedToken() {
+        service.revoke(token(7L, System.currentTimeMillis() + 60000, 1L, SECRET + "x"));
+        service.revoke("not-a-token");
+        verify(zSetOperations, never()).add(anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    void requiresLongSecretInSignedMode() {
+        assertThrows(IllegalStateException.class,
+                () -> new SignedTokenService(stringRedisTemplate, SignedTokenService.TOKEN_MODE_SIGNED, "short"));
+        assertThrows(IllegalStateException.class,
+                () -> new SignedTokenService(stringRedisTemplate, SignedTokenService.TOKEN_MODE_SIGNED, ""));
+        assertFalse(new SignedTokenService(stringRedisTemplate, "redis", "").isEnabled());
+    }
+
+    private static UserDTO user(Long id, String nickName, String icon) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName(nickName);
+        user.setIcon(icon);
+        return user;
+    }
+
+    /**
+     * 按SignedTokenService的格式签发令牌, 用于构造指定过期时间的令牌
+     */
+    private static String token(long sessionId, long expireAt, long userId, String secret) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(sessionId);
+            out.writeLong(expireAt);
+            out.writeLong(userId);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            return encoder.encodeToString(bytes.toByteArray()) + "." + encoder.encodeToString(mac.doFinal(bytes.toByteArray()));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long sessionId(String token) {
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+        long id = 0;
+        for (int i = 0; i < 8; i++) {
+            id = (id << 8) | (payload[i] & 0xFF);
+        }
+        return id;
+    }
+}
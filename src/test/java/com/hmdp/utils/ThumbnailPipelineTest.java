@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailPipelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void decodesLargeImageSubsampled() throws Exception {
+        // 宽图按最大缩略图宽度的两倍采样: 3000 / 1280 = 2
+        BufferedImage wide = ThumbnailPipeline.readSubsampled(write("wide.jpg", 3000, 2000));
+        assertEquals(1500, wide.getWidth());
+        assertEquals(1000, wide.getHeight());
+
+        // 细长的图片按解码后的总像素数采样: 800万像素至少每2个取1个
+        BufferedImage tall = ThumbnailPipeline.readSubsampled(write("tall.jpg", 400, 20000));
+        assertTrue((long) tall.getWidth() * tall.getHeight() <= 4_000_000L);
+        assertEquals(200, tall.getWidth());
+
+        // 小图原样解码
+        BufferedImage small = ThumbnailPipeline.readSubsampled(write("small.png", 800, 600));
+        assertEquals(800, small.getWidth());
+        assertEquals(600, small.getHeight());
+    }
+
+    @Test
+    void skipsUnknownFormat() throws Exception {
+        Path file = dir.resolve("fake.jpg");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        assertNull(ThumbnailPipeline.readSubsampled(file));
+    }
+
+    private Path write(String name, int width, int height) throws Exception {
+        Path file = dir.resolve(name);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), name.substring(name.indexOf('.') + 1), file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserDTOHashCodec与原先Hutool反射转换的对比
+ * 不随单元测试执行, 运行main方法, 或在IDE中直接运行
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDTOHashCodecBenchmark {
+
+    private UserDTO user;
+    private Map<String, String> hash;
+
+    @Setup
+    public void setup() {
+        user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("user_ab12cd34ef");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+        hash = UserDTOHashCodec.INSTANCE.encode(user);
+    }
+
+    @Benchmark
+    public Map<String, String> encodeCodec() {
+        return UserDTOHashCodec.INSTANCE.encode(user);
+    }
+
+    @Benchmark
+    public Map<String, Object> encodeHutool() {
+        return BeanUtil.beanToMap(user, new HashMap<>(),
+                CopyOptions.create()
+                        .setIgnoreNullValue(true)
+                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+    }
+
+    @Benchmark
+    public UserDTO decodeCodec() {
+        return UserDTOHashCodec.INSTANCE.decode(hash);
+    }
+
+    @Benchmark
+    public UserDTO decodeHutool() {
+        return BeanUtil.fillBeanWithMap(hash, new UserDTO(), false);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserDTOHashCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
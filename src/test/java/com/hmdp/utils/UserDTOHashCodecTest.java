@@ -0,0 +1,47 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 编解码结果需要与原先的Hutool转换一致
+ */
+class UserDTOHashCodecTest {
+
+    @Test
+    void encodeMatchesHutool() {
+        for (UserDTO user : new UserDTO[]{user(1L, "user_a", "/icon.jpg"), user(2L, null, null), user(null, "n", null)}) {
+            // 原先的编辑器遇到null字段会抛出空指针, 这里改为跳过, 与忽略null值的语义一致
+            Map<String, Object> expected = BeanUtil.beanToMap(user, new HashMap<>(),
+                    CopyOptions.create()
+                            .setIgnoreNullValue(true)
+                            .setFieldValueEditor((fieldName, fieldValue) -> fieldValue == null ? null : fieldValue.toString()));
+            assertEquals(expected, new HashMap<>(UserDTOHashCodec.INSTANCE.encode(user)));
+        }
+    }
+
+    @Test
+    void decodeMatchesHutool() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("id", "7");
+        hash.put("nickName", "user_b");
+        assertEquals(BeanUtil.fillBeanWithMap(hash, new UserDTO(), false), UserDTOHashCodec.INSTANCE.decode(hash));
+        // 缺少的字段解码为null
+        assertEquals(new UserDTO(), UserDTOHashCodec.INSTANCE.decode(new HashMap<>()));
+    }
+
+    private static UserDTO user(Long id, String nickName, String icon) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName(nickName);
+        user.setIcon(icon);
+        return user;
+    }
+}
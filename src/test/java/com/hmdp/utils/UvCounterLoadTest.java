@@ -0,0 +1,159 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 多线程持续写入的同时由后台线程刷新缓冲
+ * 本地缓冲只做去重, 不应引入额外误差: 写入Redis的访客必须与产生的访客完全一致;
+ * 缓冲中的访问记录数应保持在刷新阈值附近, 不随访问量增长
+ * <p>
+ * HyperLogLog的误差与内存占用需要真实的Redis, 通过 -Dhmdp.test.redis=host:port 指定后才执行
+ */
+class UvCounterLoadTest {
+
+    private static final int THREADS = 8;
+    private static final int VISITS_PER_THREAD = 100_000;
+    private static final int VISITORS = 300_000;
+    private static final int PAGES = 3;
+    private static final int MAX_PENDING = 100_000;
+    private static final int MILLIONS_OF_VISITORS = 3_000_000;
+
+    @Test
+    void noVisitIsLostUnderConcurrentFlush() throws Exception {
+        // 1. 模拟Redis管道, 记录每个key收到的访客; 用动态代理而不是Mockito, 避免十万个参数的调用记录拖慢刷新
+        Map<String, Set<String>> delivered = new ConcurrentHashMap<>();
+        RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> {
+                    if ("pfAdd".equals(method.getName())) {
+                        String key = new String((byte[]) args[0], StandardCharsets.UTF_8);
+                        Set<String> visitors = delivered.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+                        for (byte[] visitor : (byte[][]) args[1]) {
+                            visitors.add(new String(visitor, StandardCharsets.UTF_8));
+                        }
+                        return 1L;
+                    }
+                    return "expire".equals(method.getName()) ? Boolean.TRUE : null;
+                });
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        when(template.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+
+        UvCounter counter = new UvCounter(template, mock(ClientIpResolver.class));
+        ReflectionTestUtils.invokeMethod(counter, "init");
+        AtomicInteger pending = (AtomicInteger) ReflectionTestUtils.getField(counter, "pending");
+
+        // 2. 多线程写入, 同时采样缓冲中的记录数
+        Map<Long, Set<String>> expected = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                UserDTO user = new UserDTO();
+                try {
+                    for (int i = 0; i < VISITS_PER_THREAD; i++) {
+                        long page = random.nextInt(PAGES);
+                        user.setId((long) random.nextInt(VISITORS));
+                        UserHolder.saveUser(user);
+                        counter.record(UvCounter.TYPE_SHOP, page, null);
+                        expected.computeIfAbsent(page, k -> ConcurrentHashMap.newKeySet()).add("u" + user.getId());
+                    }
+                } finally {
+                    UserHolder.removeUser();
+                    done.countDown();
+                }
+            }).start();
+        }
+        int peak = 0;
+        while (done.getCount() > 0) {
+            peak = Math.max(peak, pending.get());
+            Thread.sleep(1);
+        }
+        ReflectionTestUtils.invokeMethod(counter, "destroy");
+
+        // 3. 刷新后的访客与产生的访客完全一致
+        assertEquals(PAGES, delivered.size());
+        for (Map.Entry<String, Set<String>> entry : delivered.entrySet()) {
+            // key: uv:{类型}:{页面id}:{日期}
+            long page = Long.parseLong(entry.getKey().split(":")[2]);
+            Set<String> visitors = expected.get(page);
+            assertTrue(visitors.equals(entry.getValue()),
+                    "page " + page + ": expected " + visitors.size() + " visitors, delivered " + entry.getValue().size());
+        }
+        assertEquals(0, pending.get());
+        // 4. 缓冲达到上限时写入线程自己刷新, 峰值不超过上限加上并发写入的线程数
+        assertTrue(peak <= MAX_PENDING * 2 + THREADS, "peak pending: " + peak);
+    }
+    @Test
+    @EnabledIfSystemProperty(named = "hmdp.test.redis", matches = ".+")
+    void millionsOfVisitorsStayWithinErrorAndMemoryBounds() throws Exception {
+        String[] address = System.getProperty("hmdp.test.redis").split(":");
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(address[0], Integer.parseInt(address[1])));
+        factory.afterPropertiesSet();
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        // 不会与真实商铺冲突的页面id
+        long page = -ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+        LocalDate today = LocalDate.now();
+        String key = RedisConstants.UV_KEY + UvCounter.TYPE_SHOP + ":" + page + ":" + today.format(DateTimeFormatter.BASIC_ISO_DATE);
+        try {
+            // 1. 数百万个不同的访客经过本地缓冲写入Redis
+            UvCounter counter = new UvCounter(template, mock(ClientIpResolver.class));
+            ReflectionTestUtils.invokeMethod(counter, "init");
+            UserDTO user = new UserDTO();
+            try {
+                for (long id = 0; id < MILLIONS_OF_VISITORS; id++) {
+                    user.setId(id);
+                    UserHolder.saveUser(user);
+                    counter.record(UvCounter.TYPE_SHOP, page, null);
+                }
+            } finally {
+                UserHolder.removeUser();
+            }
+            ReflectionTestUtils.invokeMethod(counter, "destroy");
+
+            // 2. PFCOUNT的相对误差: 标准误差约0.81%, 按2%断言
+            long estimate = counter.count(UvCounter.TYPE_SHOP, page, today, today);
+            double error = Math.abs(estimate - MILLIONS_OF_VISITORS) / (double) MILLIONS_OF_VISITORS;
+            assertTrue(error < 0.02, "estimate " + estimate + ", error " + error);
+
+            // 3. 密集编码的寄存器固定为12KB, 加上16字节的头; MEMORY USAGE另含键与对象头及分配器的取整
+            Long length = template.opsForValue().size(key);
+            Long usage = template.execute((RedisCallback<Long>) connection -> (Long) connection.execute("MEMORY",
+                    "USAGE".getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8)));
+            assertTrue(length != null && length <= 12 * 1024 + 16, "strlen " + length);
+            assertTrue(usage != null && usage <= 16 * 1024, "memory usage " + usage);
+        } finally {
+            template.delete(key);
+            factory.destroy();
+        }
+    }
+}